@@ -0,0 +1,82 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.lastnpe.m2e.engine.EeaMarkerParser;
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Splitting and parsing the content of an eea-for-gav marker, with a comment
+ * and a blank line every few GAVs, like hand written markers have; against
+ * the regex based parser which {@link EeaMarkerParser} replaced, as baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EeaMarkerParserBenchmark {
+
+    @Param({ "5", "100", "1000" })
+    public int gavCount;
+
+    private static final Pattern NEWLINE_REGEXP = Pattern.compile("\\n");
+
+    private String content;
+    private byte[] bytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final StringBuilder marker = new StringBuilder();
+        final List<String> lines = SyntheticGavs.lines(gavCount);
+        for (int i = 0; i < lines.size(); i++) {
+            if (i % 10 == 0) {
+                marker.append("\n# Group ").append(i / 10).append('\n');
+            }
+            marker.append("  ").append(lines.get(i)).append('\n');
+        }
+        content = marker.toString();
+        bytes = content.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The former parser: split with a regex, trim and filter the lines in a
+     * stream, and parse each one on its own.
+     */
+    @Benchmark
+    public List<MavenGAV> parseRegex() {
+        return NEWLINE_REGEXP.splitAsStream(content).map(t -> t.trim()).filter(t -> !t.isEmpty())
+                .filter(t -> !t.startsWith("#")).map(MavenGAV::parse).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<MavenGAV> parse() {
+        return EeaMarkerParser.parse(content, "benchmark");
+    }
+
+    /**
+     * What the configurator does, parsing the bytes as read from the JAR.
+     */
+    @Benchmark
+    public List<MavenGAV> parseBytes() {
+        return EeaMarkerParser.parse(bytes, "benchmark");
+    }
+
+}
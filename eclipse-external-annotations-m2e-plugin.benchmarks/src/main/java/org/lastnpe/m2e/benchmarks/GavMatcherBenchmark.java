@@ -0,0 +1,72 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.lastnpe.m2e.engine.GavMatcher;
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the GAV to EEA mapping of a classpath, and looking up all its
+ * entries in it, for anything from a few EEA projects to a large collection
+ * of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GavMatcherBenchmark {
+
+    /** EEA archives the GAVs are spread over. */
+    private static final int EEA_COUNT = 20;
+
+    @Param({ "100", "1000", "10000" })
+    public int gavCount;
+
+    private List<MavenGAV> gavs;
+    private List<String[]> coordinates;
+    private GavMatcher<String> matcher;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        gavs = SyntheticGavs.lines(gavCount).stream().map(MavenGAV::parse).collect(Collectors.toList());
+        coordinates = SyntheticGavs.coordinates(gavCount);
+        matcher = build();
+    }
+
+    @Benchmark
+    public GavMatcher<String> build() {
+        final GavMatcher.Builder<String> builder = GavMatcher.builder();
+        for (int i = 0; i < gavs.size(); i++) {
+            builder.add(gavs.get(i), "eea-" + i % EEA_COUNT);
+        }
+        return builder.build();
+    }
+
+    @Benchmark
+    public int match() {
+        int matched = 0;
+        for (final String[] c : coordinates) {
+            if (matcher.match(c[0], c[1], c[2], c[3]).isPresent()) {
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+}
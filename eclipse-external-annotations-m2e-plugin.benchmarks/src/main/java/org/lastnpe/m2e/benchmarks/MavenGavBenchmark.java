@@ -0,0 +1,73 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing marker lines into {@link MavenGAV}s, and matching classpath entries
+ * against them one by one, as the configurator did before it had a
+ * {@link org.lastnpe.m2e.engine.GavMatcher}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MavenGavBenchmark {
+
+    @Param({ "100", "1000" })
+    public int gavCount;
+
+    private List<String> lines;
+    private List<MavenGAV> gavs;
+    private List<String[]> coordinates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lines = SyntheticGavs.lines(gavCount);
+        gavs = lines.stream().map(MavenGAV::parse).collect(Collectors.toList());
+        coordinates = SyntheticGavs.coordinates(gavCount);
+    }
+
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        for (final String line : lines) {
+            blackhole.consume(MavenGAV.parse(line));
+        }
+    }
+
+    /**
+     * Every classpath entry against every GAV, i.e. O(entries * GAVs).
+     */
+    @Benchmark
+    public int matches() {
+        int matched = 0;
+        for (final String[] c : coordinates) {
+            for (final MavenGAV gav : gavs) {
+                if (gav.matches(c[0], c[1], c[2], c[3])) {
+                    matched++;
+                    break;
+                }
+            }
+        }
+        return matched;
+    }
+
+}
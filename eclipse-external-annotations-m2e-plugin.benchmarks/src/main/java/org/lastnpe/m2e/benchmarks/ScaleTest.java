@@ -0,0 +1,246 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.lastnpe.m2e.benchmarks.SyntheticWorkspace.Entry;
+import org.lastnpe.m2e.benchmarks.SyntheticWorkspace.Module;
+import org.lastnpe.m2e.engine.CompilerPreferencesCache;
+import org.lastnpe.m2e.engine.EeaFiles;
+import org.lastnpe.m2e.engine.EeaMarkerIndex;
+import org.lastnpe.m2e.engine.ExternalAnnotationsEngine;
+import org.lastnpe.m2e.engine.MarkerCache;
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.lastnpe.m2e.engine.Metrics;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Scale test of a whole workspace import: generates a {@link SyntheticRepository}
+ * and a {@link SyntheticWorkspace} of N modules, then calls the
+ * {@link ExternalAnnotationsEngine} for every module the way the configurator
+ * does during an import, and reports the total and per phase time of
+ * findJreAnnotationPath, configureClasspath and getCompilerOptions, the peak
+ * heap, and how many files were opened.
+ *
+ * <p>
+ * This measures the engine only: neither m2e nor JDT run, so the time which
+ * the m2e configurator's own methods (configureRawClasspath,
+ * configureClasspath, configure) spend on resolving Maven artifacts, setting
+ * classpath containers and writing preferences is not included.
+ *
+ * <p>
+ * The first run starts cold, with an empty eea-for-gav index; each following
+ * run is like another "Update Maven Project" of all modules, in a new
+ * configuration session but with the index and the compiler preferences of
+ * the earlier ones. If a run exceeds one of the budgets, the process exits
+ * with status 1, so that this can fail a build, see the scale-test profile in
+ * this module's pom.xml.
+ *
+ * <p>
+ * Options are given as name=value arguments:
+ * <dl>
+ * <dt>modules</dt><dd>number of modules, e.g. 100 to 2000 (default 500)</dd>
+ * <dt>dependencies</dt><dd>libraries each module depends on (60)</dd>
+ * <dt>libraries</dt><dd>libraries in the repository (3000)</dd>
+ * <dt>eeaPercent</dt><dd>how many out of 100 libraries have a *-eea artifact (10)</dd>
+ * <dt>compilerPrefs</dt><dd>compiler preferences JARs in the repository (5)</dd>
+ * <dt>parallelism</dt><dd>as the m2e.eea.discovery.parallelism property (1)</dd>
+ * <dt>runs</dt><dd>how many times to configure all modules (2)</dd>
+ * <dt>dir</dt><dd>where to generate, instead of a temporary directory which is deleted afterwards</dd>
+ * <dt>budgetMs, budgetHeapMb, budgetFiles</dt><dd>the most any run may take, 0 for no limit (0)</dd>
+ * </dl>
+ */
+public final class ScaleTest {
+
+    private static final String JRE_ANNOTATION_PATH = "findJreAnnotationPath";
+    private static final String CLASSPATH = "configureClasspath";
+    private static final String COMPILER_OPTIONS = "getCompilerOptions";
+    private static final String[] PHASES = { JRE_ANNOTATION_PATH, CLASSPATH, COMPILER_OPTIONS };
+
+    private static final String PROBE_EVENT = "org.lastnpe.m2e.Probe";
+
+    private final Map<String, String> options;
+    private final List<String> exceeded = new ArrayList<>();
+
+    private ScaleTest(final Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(final String[] args) throws IOException {
+        final Map<String, String> options = new LinkedHashMap<>();
+        for (final String arg : args) {
+            final int equals = arg.indexOf('=');
+            if (equals < 1) {
+                System.err.println("Expected name=value, not: " + arg);
+                System.exit(2);
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        final ScaleTest scaleTest = new ScaleTest(options);
+        scaleTest.run();
+        if (!scaleTest.exceeded.isEmpty()) {
+            scaleTest.exceeded.forEach(e -> System.err.println("Budget exceeded: " + e));
+            System.exit(1);
+        }
+    }
+
+    private void run() throws IOException {
+        final String dir = options.getOrDefault("dir", "");
+        final Path directory = dir.isEmpty() ? Files.createTempDirectory("eea-scale-test") : Paths.get(dir);
+        try {
+            final long start = System.nanoTime();
+            final SyntheticRepository repository = SyntheticRepository.generate(directory.resolve("repository"),
+                    getInt("libraries", 3000), getInt("eeaPercent", 10), getInt("compilerPrefs", 5));
+            final SyntheticWorkspace workspace = SyntheticWorkspace.generate(directory.resolve("workspace"),
+                    repository, getInt("modules", 500), getInt("dependencies", 60));
+            System.out.printf("Generated %d modules and %d libraries in %s in %d ms%n",
+                    workspace.getModules().size(), repository.getLibraries().size(), directory,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            final File indexFile = directory.resolve(EeaFiles.EEA_FOR_GAV_FILENAME + ".index").toFile();
+            Files.deleteIfExists(indexFile.toPath());
+            final CompilerPreferencesCache compilerPreferences = new CompilerPreferencesCache();
+            final int runs = getInt("runs", 2);
+            for (int run = 1; run <= runs; run++) {
+                final EeaMarkerIndex markerIndex = new EeaMarkerIndex(indexFile, EeaFiles.EEA_FOR_GAV_FILENAME);
+                markerIndex.load();
+                runOnce(run == 1 ? "cold" : "warm " + run, workspace, repository, markerIndex, compilerPreferences);
+                markerIndex.save();
+            }
+        } finally {
+            if (dir.isEmpty()) {
+                SyntheticJars.delete(directory);
+            }
+        }
+    }
+
+    private void runOnce(final String name, final SyntheticWorkspace workspace, final SyntheticRepository repository,
+            final EeaMarkerIndex markerIndex, final CompilerPreferencesCache compilerPreferences)
+            throws IOException {
+        final int parallelism = getInt("parallelism", 1);
+        final Metrics metrics = new Metrics();
+        final Map<File, List<MavenGAV>> sessionMarkers = new ConcurrentHashMap<>();
+        // like the configurator's session: probe outside of the map, the first one to finish wins
+        final MarkerCache session = (fileOrDirectory, probe) -> {
+            final List<MavenGAV> cached = sessionMarkers.get(fileOrDirectory);
+            if (cached != null) {
+                return cached;
+            }
+            final List<MavenGAV> probed = probe.apply(fileOrDirectory);
+            final List<MavenGAV> raced = sessionMarkers.putIfAbsent(fileOrDirectory, probed);
+            return raced != null ? raced : probed;
+        };
+        final ExternalAnnotationsEngine engine = new ExternalAnnotationsEngine(workspace, session,
+                Optional.of(markerIndex), compilerPreferences, metrics);
+
+        System.gc();
+        final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        int annotationPaths = 0;
+        int jreAnnotationPaths = 0;
+        final long start = System.nanoTime();
+        try (Recording recording = new Recording()) {
+            recording.enable(PROBE_EVENT);
+            recording.start();
+            for (final Module module : workspace.getModules()) {
+                if (metrics.time(JRE_ANNOTATION_PATH,
+                        () -> engine.findJreAnnotationPath(module.eeaDependencies, repository)).isPresent()) {
+                    jreAnnotationPaths++;
+                }
+                final List<Entry> classpath = module.newClasspath();
+                metrics.time(CLASSPATH, () -> engine.configureClasspath(classpath, parallelism));
+                annotationPaths += (int) classpath.stream().filter(e -> e.getAnnotationPath() != null).count();
+                metrics.time(COMPILER_OPTIONS,
+                        () -> engine.getCompilerOptions(module.compilerPluginDependencies, repository));
+            }
+            recording.stop();
+            final long elapsed = System.nanoTime() - start;
+            long peakHeap = 0;
+            for (final MemoryPoolMXBean pool : heapPools) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+            final Map<String, Integer> filesOpened = countFilesOpened(recording);
+            report(name, elapsed, peakHeap, filesOpened, metrics, annotationPaths, jreAnnotationPaths);
+        }
+    }
+
+    private static Map<String, Integer> countFilesOpened(final Recording recording) throws IOException {
+        final Path dump = Files.createTempFile("eea-scale-test", ".jfr");
+        try {
+            recording.dump(dump);
+            final Map<String, Integer> count = new TreeMap<>();
+            for (final RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                if (PROBE_EVENT.equals(event.getEventType().getName())) {
+                    count.merge(event.getString("fileName"), 1, Integer::sum);
+                }
+            }
+            return count;
+        } finally {
+            Files.deleteIfExists(dump);
+        }
+    }
+
+    private void report(final String name, final long elapsed, final long peakHeap,
+            final Map<String, Integer> filesOpened, final Metrics metrics, final int annotationPaths,
+            final int jreAnnotationPaths) {
+        final long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsed);
+        final long peakHeapMb = peakHeap >> 20;
+        final int files = filesOpened.values().stream().mapToInt(Integer::intValue).sum();
+        System.out.printf("%n%s run: %d ms, peak heap %d MB, %d files opened %s%n", name, elapsedMs, peakHeapMb,
+                files, filesOpened);
+        for (final String phase : PHASES) {
+            final long[] timing = metrics.getTiming(phase);
+            System.out.printf("  %-22s total %6d ms, max %5d ms over %d modules%n", phase,
+                    TimeUnit.NANOSECONDS.toMillis(timing[1]), TimeUnit.NANOSECONDS.toMillis(timing[2]), timing[0]);
+        }
+        System.out.printf("  %d annotation paths set, %d JRE annotation paths found%n", annotationPaths,
+                jreAnnotationPaths);
+        System.out.print(metrics.getSummary().replaceAll("(?m)^", "  "));
+
+        checkBudget(name, "time", elapsedMs, getInt("budgetMs", 0), "ms");
+        checkBudget(name, "peak heap", peakHeapMb, getInt("budgetHeapMb", 0), "MB");
+        checkBudget(name, "files opened", files, getInt("budgetFiles", 0), "");
+    }
+
+    private void checkBudget(final String run, final String what, final long actual, final long budget,
+            final String unit) {
+        if (budget > 0 && actual > budget) {
+            exceeded.add(String.format("%s run: %s %d%s > %d%s", run, what, actual, unit, budget, unit));
+        }
+    }
+
+    private int getInt(final String name, final int defaultValue) {
+        final String value = options.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a number for " + name + ", not: " + value, e);
+        }
+    }
+
+}
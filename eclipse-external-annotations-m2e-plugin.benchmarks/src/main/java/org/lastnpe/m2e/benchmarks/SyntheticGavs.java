@@ -0,0 +1,63 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible GAVs shaped like those of a real eea-for-gav marker
+ * or classpath: a few dozen groupIds, each with many artifacts, some with a
+ * version, fewer with a classifier.
+ */
+final class SyntheticGavs {
+
+    private SyntheticGavs() {
+    }
+
+    /**
+     * GAVs as they appear in a marker, i.e. groupId:artifactId[:version[:classifier]].
+     */
+    static List<String> lines(final int count) {
+        final Random random = new Random(42);
+        final List<String> lines = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final StringBuilder line = new StringBuilder(groupId(i)).append(':').append(artifactId(i));
+            final int kind = random.nextInt(10);
+            if (kind >= 6) {
+                line.append(':').append(version(i));
+            }
+            if (kind >= 9) {
+                line.append(":tests");
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+
+    /**
+     * Coordinates of classpath entries, as {groupId, artifactId, version, classifier}, about half of which are
+     * covered by {@link #lines(int)} of the same count.
+     */
+    static List<String[]> coordinates(final int count) {
+        final Random random = new Random(43);
+        final List<String[]> coordinates = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int n = random.nextBoolean() ? i : count + i;
+            coordinates.add(new String[] { groupId(n), artifactId(n), version(n), null });
+        }
+        return coordinates;
+    }
+
+    private static String groupId(final int i) {
+        return "org.example.group" + i % 40;
+    }
+
+    private static String artifactId(final int i) {
+        return "artifact-" + i;
+    }
+
+    private static String version(final int i) {
+        return "1." + i % 7 + "." + i % 3;
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates reproducible sets of JARs, some of them with an eea-for-gav marker,
+ * or collects the JARs of an existing directory such as ~/.m2/repository.
+ */
+final class SyntheticJars {
+
+    static final String EEA_FOR_GAV = "eea-for-gav";
+
+    private SyntheticJars() {
+    }
+
+    /**
+     * Generate JARs with a fixed seed, so that runs on different commits probe identical files.
+     *
+     * @param markerPercent how many out of 100 JARs get an eea-for-gav marker
+     */
+    static List<File> generate(final Path directory, final int count, final int markerPercent,
+            final int entriesPerJar) throws IOException {
+        final Random random = new Random(42);
+        final List<File> jars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final File jar = directory.resolve("artifact-" + i + ".jar").toFile();
+            try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+                final byte[] content = new byte[64];
+                for (int e = 0; e < entriesPerJar; e++) {
+                    out.putNextEntry(new ZipEntry("org/example/artifact" + i + "/Class" + e + ".class"));
+                    random.nextBytes(content);
+                    out.write(content);
+                    out.closeEntry();
+                }
+                if (random.nextInt(100) < markerPercent) {
+                    out.putNextEntry(new ZipEntry(EEA_FOR_GAV));
+                    writeMarker(out, i);
+                    out.closeEntry();
+                }
+            }
+            jars.add(jar);
+        }
+        return jars;
+    }
+
+    static void writeMarker(final OutputStream out, final int i) throws IOException {
+        final String marker = "# External annotations of\n" + "org.example:artifact-" + i + "\n"
+                + "org.example:artifact-" + i + "-extras:1.0\n" + "\n";
+        out.write(marker.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static List<File> collect(final Path directory, final int limit) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(p -> p.toString().endsWith(".jar")).sorted().limit(limit).map(Path::toFile)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    static void delete(final Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(final Path dir, final IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,139 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.lastnpe.m2e.engine.ArtifactResolver;
+
+/**
+ * Generates a reproducible local Maven repository on the file system, in the
+ * usual groupId/artifactId/version layout: plain libraries, *-eea artifacts
+ * with an eea-for-gav marker for some of them, one *-eea artifact for the JRE,
+ * and JARs with an org.eclipse.jdt.core.prefs as maven-compiler-plugin
+ * dependencies. It is also the {@link ArtifactResolver} of its artifacts.
+ */
+final class SyntheticRepository implements ArtifactResolver<SyntheticRepository.Artifact, IOException> {
+
+    static final Artifact JRE_EEA = new Artifact("org.example.eea", "jdk-eea", "1.0");
+
+    private static final int GROUPS = 20;
+    private static final int CLASSES_PER_JAR = 50;
+
+    private final Path directory;
+    private final List<Artifact> libraries = new ArrayList<>();
+    private final List<Optional<Artifact>> eeaOfLibrary = new ArrayList<>();
+    private final List<Artifact> compilerPrefs = new ArrayList<>();
+
+    private SyntheticRepository(final Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Generate a repository with a fixed seed, so that runs on different commits see identical files.
+     *
+     * @param eeaPercent how many out of 100 libraries have a *-eea artifact
+     */
+    static SyntheticRepository generate(final Path directory, final int libraryCount, final int eeaPercent,
+            final int compilerPrefsCount) throws IOException {
+        final SyntheticRepository repository = new SyntheticRepository(directory);
+        final Random random = new Random(42);
+        for (int i = 0; i < libraryCount; i++) {
+            final Artifact library = new Artifact("org.example.g" + i % GROUPS, "lib-" + i, "1." + i % 3);
+            repository.writeJar(library, random, null, null);
+            repository.libraries.add(library);
+            if (random.nextInt(100) < eeaPercent) {
+                final Artifact eea = new Artifact(library.groupId, library.artifactId + "-eea", "1.0");
+                repository.writeJar(eea, random, SyntheticJars.EEA_FOR_GAV,
+                        library.groupId + ':' + library.artifactId + '\n');
+                repository.eeaOfLibrary.add(Optional.of(eea));
+            } else {
+                repository.eeaOfLibrary.add(Optional.empty());
+            }
+        }
+        repository.writeJar(JRE_EEA, random, SyntheticJars.EEA_FOR_GAV, "java:java\n");
+        for (int i = 0; i < compilerPrefsCount; i++) {
+            final Artifact prefs = new Artifact("org.example.build", "compiler-prefs-" + i, "1.0");
+            repository.writeJar(prefs, random, "org.eclipse.jdt.core.prefs",
+                    "eclipse.preferences.version=1\n"
+                            + "org.eclipse.jdt.core.compiler.annotation.nullanalysis=enabled\n"
+                            + "org.eclipse.jdt.core.compiler.problem.nullReference=error\n");
+            repository.compilerPrefs.add(prefs);
+        }
+        return repository;
+    }
+
+    List<Artifact> getLibraries() {
+        return libraries;
+    }
+
+    Optional<Artifact> getEea(final int library) {
+        return eeaOfLibrary.get(library);
+    }
+
+    List<Artifact> getCompilerPrefs() {
+        return compilerPrefs;
+    }
+
+    File getFile(final Artifact artifact) {
+        return directory.resolve(artifact.groupId.replace('.', '/')).resolve(artifact.artifactId)
+                .resolve(artifact.version).resolve(artifact.artifactId + '-' + artifact.version + ".jar").toFile();
+    }
+
+    @Override
+    public Optional<File> resolve(final Artifact artifact) {
+        final File file = getFile(artifact);
+        return file.isFile() ? Optional.of(file) : Optional.empty();
+    }
+
+    private void writeJar(final Artifact artifact, final Random random, final String extraEntry,
+            final String extraContent) throws IOException {
+        final File jar = getFile(artifact);
+        Files.createDirectories(jar.toPath().getParent());
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            final byte[] content = new byte[64];
+            final String packagePath = artifact.groupId.replace('.', '/') + '/'
+                    + artifact.artifactId.replace('-', '_') + '/';
+            for (int c = 0; c < CLASSES_PER_JAR; c++) {
+                out.putNextEntry(new ZipEntry(packagePath + "Class" + c + ".class"));
+                random.nextBytes(content);
+                out.write(content);
+                out.closeEntry();
+            }
+            if (extraEntry != null) {
+                out.putNextEntry(new ZipEntry(extraEntry));
+                out.write(extraContent.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Coordinates of an artifact of the repository, standing in for a Maven Dependency.
+     */
+    static final class Artifact {
+        final String groupId;
+        final String artifactId;
+        final String version;
+
+        Artifact(final String groupId, final String artifactId, final String version) {
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        @Override
+        public String toString() {
+            return groupId + ':' + artifactId + ':' + version;
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+
+import org.lastnpe.m2e.benchmarks.SyntheticRepository.Artifact;
+import org.lastnpe.m2e.engine.ClasspathEntry;
+import org.lastnpe.m2e.engine.Workspace;
+
+/**
+ * Generates a reproducible workspace of Maven modules depending on the
+ * artifacts of a {@link SyntheticRepository} and on each other, and stands in
+ * for the Eclipse workspace: module paths such as /module-7 map to their
+ * directory, everything else is an absolute file system path.
+ *
+ * <p>
+ * Every module depends on the JRE's *-eea artifact, on the *-eea artifacts of
+ * those of its libraries which have one, and on a few earlier modules, some
+ * of which are EEA projects with their own eea-for-gav marker; its
+ * maven-compiler-plugin depends on one of the compiler preferences JARs.
+ */
+final class SyntheticWorkspace implements Workspace {
+
+    private static final int EEA_PROJECT_EVERY = 25;
+    private static final int MODULE_DEPENDENCIES = 3;
+
+    private final Map<String, File> locations = new HashMap<>();
+    private final Map<File, String> paths = new HashMap<>();
+    private final List<Module> modules = new ArrayList<>();
+
+    private SyntheticWorkspace() {
+    }
+
+    /**
+     * @param dependencies how many libraries of the repository each module depends on
+     */
+    static SyntheticWorkspace generate(final Path directory, final SyntheticRepository repository,
+            final int moduleCount, final int dependencies) throws IOException {
+        final SyntheticWorkspace workspace = new SyntheticWorkspace();
+        final Random random = new Random(42);
+        final List<Artifact> libraries = repository.getLibraries();
+        for (int m = 0; m < moduleCount; m++) {
+            final String name = "module-" + m;
+            final File location = directory.resolve(name).toFile();
+            Files.createDirectories(location.toPath().resolve("target").resolve("classes"));
+            if (m % EEA_PROJECT_EVERY == 0 && !libraries.isEmpty()) {
+                final Artifact claimed = libraries.get(random.nextInt(libraries.size()));
+                Files.write(location.toPath().resolve(SyntheticJars.EEA_FOR_GAV),
+                        (claimed.groupId + ':' + claimed.artifactId + '\n').getBytes(StandardCharsets.UTF_8));
+            }
+            workspace.locations.put('/' + name, location);
+            workspace.paths.put(location, '/' + name);
+
+            final Module module = new Module(name);
+            final Set<Integer> picked = new LinkedHashSet<>();
+            while (picked.size() < Math.min(dependencies, libraries.size())) {
+                picked.add(random.nextInt(libraries.size()));
+            }
+            for (int i = 0; i < Math.min(m, MODULE_DEPENDENCIES); i++) {
+                final int dependency = random.nextInt(m);
+                module.entries.add(new Entry("/module-" + dependency, "org.example.ws", "module-" + dependency,
+                        "1.0-SNAPSHOT"));
+            }
+            module.eeaDependencies.add(SyntheticRepository.JRE_EEA);
+            module.entries.add(entry(repository, SyntheticRepository.JRE_EEA));
+            for (final int library : picked) {
+                module.entries.add(entry(repository, libraries.get(library)));
+                final Optional<Artifact> eea = repository.getEea(library);
+                if (eea.isPresent()) {
+                    module.eeaDependencies.add(eea.get());
+                    module.entries.add(entry(repository, eea.get()));
+                }
+            }
+            if (!repository.getCompilerPrefs().isEmpty()) {
+                module.compilerPluginDependencies
+                        .add(repository.getCompilerPrefs().get(m % repository.getCompilerPrefs().size()));
+            }
+            workspace.modules.add(module);
+        }
+        return workspace;
+    }
+
+    List<Module> getModules() {
+        return modules;
+    }
+
+    @Override
+    public Optional<File> getLocation(final String path) {
+        final File location = locations.get(path);
+        return Optional.of(location != null ? location : new File(path));
+    }
+
+    @Override
+    public String getAnnotationPath(final File location) {
+        final String path = paths.get(location);
+        return path != null ? path : location.getAbsolutePath();
+    }
+
+    private static Entry entry(final SyntheticRepository repository, final Artifact artifact) {
+        return new Entry(repository.getFile(artifact).getAbsolutePath(), artifact.groupId, artifact.artifactId,
+                artifact.version);
+    }
+
+    /**
+     * A generated module, with what M2E would pass to the configurator for it.
+     */
+    static final class Module {
+        final String name;
+        final List<Entry> entries = new ArrayList<>();
+        final List<Artifact> eeaDependencies = new ArrayList<>();
+        final List<Artifact> compilerPluginDependencies = new ArrayList<>();
+
+        Module(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * A fresh copy of the classpath, without annotation paths.
+         */
+        List<Entry> newClasspath() {
+            final List<Entry> classpath = new ArrayList<>(entries.size());
+            for (final Entry entry : entries) {
+                classpath.add(new Entry(entry.path, entry.groupId, entry.artifactId, entry.version));
+            }
+            return Collections.unmodifiableList(classpath);
+        }
+    }
+
+    static final class Entry implements ClasspathEntry {
+        private final String path;
+        private final String groupId;
+        private final String artifactId;
+        private final String version;
+        private String annotationPath;
+
+        Entry(final String path, final String groupId, final String artifactId, final String version) {
+            this.path = path;
+            this.groupId = groupId;
+            this.artifactId = artifactId;
+            this.version = version;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getGroupId() {
+            return groupId;
+        }
+
+        @Override
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Override
+        public String getVersion() {
+            return version;
+        }
+
+        @Override
+        public String getClassifier() {
+            return null;
+        }
+
+        @Override
+        public void setAnnotationPath(final String annotationPath) {
+            this.annotationPath = annotationPath;
+        }
+
+        String getAnnotationPath() {
+            return annotationPath;
+        }
+    }
+
+}
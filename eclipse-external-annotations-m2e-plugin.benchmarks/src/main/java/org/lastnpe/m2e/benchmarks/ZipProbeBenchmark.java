@@ -0,0 +1,104 @@
+package org.lastnpe.m2e.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.lastnpe.m2e.engine.ZipEntryProbe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Probing a set of JARs for their eea-for-gav marker, with {@link ZipFile} as
+ * the configurator used to, versus {@link ZipEntryProbe}.
+ *
+ * <p>
+ * By default this uses generated JARs; pass e.g.
+ * <code>-p repository=$HOME/.m2/repository</code> to probe (up to
+ * <code>jarCount</code>) real JARs instead. Generating 50000 JARs takes a
+ * while and about 1 GB in the temporary directory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ZipProbeBenchmark {
+
+    @Param("")
+    public String repository;
+
+    @Param({ "1000", "10000", "50000" })
+    public int jarCount;
+
+    /** How many out of 100 generated JARs have an eea-for-gav marker. */
+    @Param({ "1", "10" })
+    public int markerPercent;
+
+    /** Entries per generated JAR, which is what the size of the central directory depends on. */
+    @Param("100")
+    public int entriesPerJar;
+
+    private Path generated;
+    private List<File> jars;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        if (repository.isEmpty()) {
+            generated = Files.createTempDirectory("zip-probe-benchmark");
+            jars = SyntheticJars.generate(generated, jarCount, markerPercent, entriesPerJar);
+        } else {
+            jars = SyntheticJars.collect(Paths.get(repository), jarCount);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        SyntheticJars.delete(generated);
+    }
+
+    @Benchmark
+    public int zipFile() throws IOException {
+        int found = 0;
+        for (final File jar : jars) {
+            try (ZipFile zipFile = new ZipFile(jar)) {
+                final ZipEntry entry = zipFile.getEntry(SyntheticJars.EEA_FOR_GAV);
+                if (entry != null) {
+                    try (InputStream is = zipFile.getInputStream(entry)) {
+                        found += is.readAllBytes().length;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int zipEntryProbe() throws IOException {
+        int found = 0;
+        for (final File jar : jars) {
+            found += ZipEntryProbe.read(jar, SyntheticJars.EEA_FOR_GAV).map(bytes -> bytes.length).orElse(0);
+        }
+        return found;
+    }
+
+}
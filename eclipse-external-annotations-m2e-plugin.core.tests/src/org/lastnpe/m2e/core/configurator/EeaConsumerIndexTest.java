@@ -0,0 +1,124 @@
+package org.lastnpe.m2e.core.configurator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.Path;
+import org.junit.Test;
+
+public class EeaConsumerIndexTest {
+
+    private final EeaConsumerIndex index = new EeaConsumerIndex(null);
+
+    @Test
+    public void installedJarIsFoundByItsClasspathEntryPath() {
+        final IProject consumer = project("consumer");
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "repository");
+        // as M2E puts it on the classpath, with '/' separators on every platform
+        final IPath classpathPath = Path.fromOSString(directory.getAbsolutePath()).append("library-eea.jar");
+        index.setSources(consumer, Collections.singletonList(classpathPath));
+
+        // as the local repository listener reports it, with the platform's separators
+        final File installed = new File(directory, "library-eea.jar");
+        assertEquals(Collections.singleton(consumer), index.getConsumers(installed));
+    }
+
+    @Test
+    public void relativeJarIsFoundByItsAbsolutePath() {
+        final IProject consumer = project("consumer");
+        final IPath classpathPath = Path.fromOSString(System.getProperty("user.dir")).append("lib/library-eea.jar");
+        index.setSources(consumer, Collections.singletonList(classpathPath));
+
+        assertEquals(Collections.singleton(consumer), index.getConsumers(new File("lib", "library-eea.jar")));
+    }
+
+    @Test
+    public void workspaceProjectIsFoundByItsFullPath() {
+        final IProject consumer = project("consumer");
+        index.setSources(consumer, Collections.singletonList(Path.fromOSString("/library-eea")));
+
+        assertEquals(Collections.singleton(consumer), index.getConsumers(Path.fromOSString("/library-eea")));
+        assertTrue(index.getConsumers(Path.fromOSString("/other-eea")).isEmpty());
+    }
+
+    @Test
+    public void setSourcesReplacesEarlierSources() {
+        final IProject consumer = project("consumer");
+        final IProject other = project("other");
+        final File oldJar = new File("old-eea.jar");
+        final File newJar = new File("new-eea.jar");
+        index.setSources(consumer, Collections.singletonList(EeaConsumerIndex.toPath(oldJar)));
+        index.setSources(other, Collections.singletonList(EeaConsumerIndex.toPath(oldJar)));
+
+        index.setSources(consumer, Collections.singletonList(EeaConsumerIndex.toPath(newJar)));
+
+        assertEquals(Collections.singleton(other), index.getConsumers(oldJar));
+        assertEquals(Collections.singleton(consumer), index.getConsumers(newJar));
+    }
+
+    @Test
+    public void markerChangeIsFoundWhereItIsRead() {
+        assertTrue(EeaConsumerIndex.hasMarkerChange(delta("eea-for-gav", IResourceDelta.ADDED, 0)));
+        assertTrue(EeaConsumerIndex.hasMarkerChange(delta("eea-for-gav", IResourceDelta.REMOVED, 0)));
+        assertTrue(EeaConsumerIndex.hasMarkerChange(
+                delta("target/classes/eea-for-gav", IResourceDelta.CHANGED, IResourceDelta.CONTENT)));
+        // touched, or somewhere the configurator never reads it
+        assertFalse(EeaConsumerIndex.hasMarkerChange(delta("eea-for-gav", IResourceDelta.CHANGED, 0)));
+        assertFalse(EeaConsumerIndex.hasMarkerChange(delta("src/test/resources/eea-for-gav", IResourceDelta.ADDED,
+                0)));
+    }
+
+    /**
+     * A project delta which only has a change of the given kind at the given path.
+     */
+    private static IResourceDelta delta(final String path, final int kind, final int flags) {
+        final IResourceDelta member = (IResourceDelta) Proxy.newProxyInstance(
+                EeaConsumerIndexTest.class.getClassLoader(), new Class<?>[] { IResourceDelta.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "getKind":
+                        return kind;
+                    case "getFlags":
+                        return flags;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (IResourceDelta) Proxy.newProxyInstance(EeaConsumerIndexTest.class.getClassLoader(),
+                new Class<?>[] { IResourceDelta.class }, (proxy, method, args) -> {
+                    if ("findMember".equals(method.getName())) {
+                        return new Path(path).equals(args[0]) ? member : null;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * A project which only knows its name, and is only equal to itself.
+     */
+    private static IProject project(final String name) {
+        return (IProject) Proxy.newProxyInstance(EeaConsumerIndexTest.class.getClassLoader(),
+                new Class<?>[] { IProject.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                    case "getName":
+                        return name;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
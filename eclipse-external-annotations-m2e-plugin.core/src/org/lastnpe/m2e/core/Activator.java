@@ -0,0 +1,264 @@
+package org.lastnpe.m2e.core;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.Hashtable;
+
+import org.apache.maven.artifact.versioning.ComparableVersion;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.Plugin;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.osgi.service.debug.DebugOptions;
+import org.eclipse.osgi.service.debug.DebugOptionsListener;
+import org.lastnpe.m2e.core.configurator.ArtifactResolutionCache;
+import org.lastnpe.m2e.core.configurator.ConfigurationSession;
+import org.lastnpe.m2e.core.configurator.EeaConsumerIndex;
+import org.lastnpe.m2e.core.configurator.PrecomputedManifestCache;
+import org.lastnpe.m2e.core.configurator.ProjectLocationIndex;
+import org.lastnpe.m2e.core.configurator.WorkspaceMarkerCache;
+import org.lastnpe.m2e.engine.CompilerPreferencesCache;
+import org.lastnpe.m2e.engine.EeaArchiveMerger;
+import org.lastnpe.m2e.engine.EeaCatalog;
+import org.lastnpe.m2e.engine.EeaFiles;
+import org.lastnpe.m2e.engine.EeaMarkerIndex;
+import org.lastnpe.m2e.engine.ExternalAnnotationsEngine;
+import org.osgi.framework.BundleContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bundle activator, which owns the state kept across Eclipse restarts.
+ */
+public class Activator extends Plugin {
+
+    public static final String PLUGIN_ID = "org.lastnpe.m2e.core";
+
+    private static final String MARKER_INDEX_FILENAME = "eea-for-gav.index";
+    private static final String CATALOG_FILENAME = "eea-catalog.txt";
+    private static final String MERGED_EEA_DIRNAME = "merged-eea";
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(Activator.class);
+
+    private static Activator plugin;
+
+    private EeaMarkerIndex markerIndex;
+
+    private final ArtifactResolutionCache resolutionCache = new ArtifactResolutionCache();
+
+    private final CompilerPreferencesCache compilerPreferencesCache = new CompilerPreferencesCache();
+
+    private final PrecomputedManifestCache precomputedManifestCache = new PrecomputedManifestCache();
+
+    private ProjectLocationIndex projectLocationIndex;
+
+    private EeaConsumerIndex consumerIndex;
+
+    private WorkspaceMarkerCache workspaceMarkerCache;
+
+    private EeaIndexingJob indexingJob;
+
+    private boolean indexingStarted;
+
+    private EeaCatalog catalog;
+
+    private EeaArchiveMerger archiveMerger;
+
+    public static Activator getDefault() {
+        return plugin;
+    }
+
+    @Override
+    public void start(final BundleContext context) throws Exception {
+        super.start(context);
+        plugin = this;
+        final Hashtable<String, String> properties = new Hashtable<>();
+        properties.put(DebugOptions.LISTENER_SYMBOLICNAME, PLUGIN_ID);
+        context.registerService(DebugOptionsListener.class, new Tracing(), properties);
+    }
+
+    @Override
+    public void stop(final BundleContext context) throws Exception {
+        try {
+            ConfigurationSession.discardNow();
+            final EeaIndexingJob job;
+            synchronized (this) {
+                job = indexingJob;
+                indexingJob = null;
+            }
+            // not while holding the lock, in case a running job needs it to finish
+            if (job != null) {
+                MavenPlugin.getMaven().removeLocalRepositoryListener(job);
+                job.cancel();
+                job.join();
+            }
+            synchronized (this) {
+                if (markerIndex != null) {
+                    markerIndex.save();
+                    markerIndex = null;
+                }
+                if (workspaceMarkerCache != null) {
+                    workspaceMarkerCache.stop();
+                    workspaceMarkerCache = null;
+                }
+                if (projectLocationIndex != null) {
+                    projectLocationIndex.stop();
+                    projectLocationIndex = null;
+                }
+                if (consumerIndex != null) {
+                    MavenPlugin.getMaven().removeLocalRepositoryListener(consumerIndex);
+                    consumerIndex.stop();
+                    consumerIndex = null;
+                }
+            }
+            ExternalAnnotationsEngine.shutdownProbeExecutor();
+        } finally {
+            plugin = null;
+            super.stop(context);
+        }
+    }
+
+    /**
+     * Artifacts resolved by the configurator, for as long as Eclipse runs, or
+     * until they are installed again, which the {@link EeaIndexingJob} hears
+     * of.
+     */
+    public ArtifactResolutionCache getResolutionCache() {
+        return resolutionCache;
+    }
+
+    /**
+     * Parsed compiler preferences, for as long as Eclipse runs.
+     */
+    public CompilerPreferencesCache getCompilerPreferencesCache() {
+        return compilerPreferencesCache;
+    }
+
+    /**
+     * Parsed manifests of precomputed EEA discovery, for as long as Eclipse runs.
+     */
+    public PrecomputedManifestCache getPrecomputedManifestCache() {
+        return precomputedManifestCache;
+    }
+
+    /**
+     * Index of the locations of workspace projects, started on first use.
+     */
+    public synchronized ProjectLocationIndex getProjectLocationIndex() {
+        if (projectLocationIndex == null) {
+            projectLocationIndex = new ProjectLocationIndex(ResourcesPlugin.getWorkspace());
+            projectLocationIndex.start();
+        }
+        return projectLocationIndex;
+    }
+
+    /**
+     * Markers of workspace directories, started on first use, see {@link WorkspaceMarkerCache}.
+     */
+    public synchronized WorkspaceMarkerCache getWorkspaceMarkerCache() {
+        if (workspaceMarkerCache == null) {
+            workspaceMarkerCache = new WorkspaceMarkerCache(ResourcesPlugin.getWorkspace(),
+                    getProjectLocationIndex());
+            workspaceMarkerCache.start();
+        }
+        return workspaceMarkerCache;
+    }
+
+    /**
+     * Reverse index of EEA sources to the projects using them, started on
+     * first use, see {@link EeaConsumerIndex}.
+     */
+    public synchronized EeaConsumerIndex getConsumerIndex() {
+        if (consumerIndex == null) {
+            consumerIndex = new EeaConsumerIndex(ResourcesPlugin.getWorkspace());
+            consumerIndex.start();
+            MavenPlugin.getMaven().addLocalRepositoryListener(consumerIndex);
+        }
+        return consumerIndex;
+    }
+
+    /**
+     * The job which fills the eea-for-gav index in the background, created on
+     * first use, and from then on notified of artifacts installed into the
+     * local repository.
+     */
+    public synchronized EeaIndexingJob getIndexingJob() {
+        if (indexingJob == null) {
+            indexingJob = new EeaIndexingJob(getMarkerIndex(), compilerPreferencesCache, getConsumerIndex(),
+                    resolutionCache);
+            MavenPlugin.getMaven().addLocalRepositoryListener(indexingJob);
+        }
+        return indexingJob;
+    }
+
+    /**
+     * Warm up the eea-for-gav index in the background, once per Eclipse
+     * session, when the first configuration session ended, see
+     * {@link EeaIndexingJob}.
+     */
+    public synchronized void startIndexing() {
+        if (!indexingStarted) {
+            indexingStarted = true;
+            getIndexingJob().scheduleFull();
+        }
+    }
+
+    /**
+     * Catalog of the *-eea artifacts of the local repository, loaded from the
+     * plugin state location on first use. If there is none yet, it is empty
+     * until the indexing job has scanned the repository, see
+     * {@link EeaCatalog#isScanned()}.
+     */
+    public synchronized EeaCatalog getEeaCatalog() {
+        if (catalog == null) {
+            final File repository = new File(MavenPlugin.getMaven().getLocalRepositoryPath());
+            final File catalogFile = getStateLocation().append(CATALOG_FILENAME).toFile();
+            catalog = new EeaCatalog(repository, catalogFile,
+                    Comparator.comparing(ComparableVersion::new));
+            catalog.load();
+            LOGGER.debug("Loaded {} *-eea artifacts of {} from {}", catalog.size(), repository, catalogFile);
+            getIndexingJob().setCatalog(catalog);
+        }
+        return catalog;
+    }
+
+    /**
+     * Merges EEA archives for containers, into the plugin state location.
+     */
+    public synchronized EeaArchiveMerger getEeaArchiveMerger() {
+        if (archiveMerger == null) {
+            archiveMerger = new EeaArchiveMerger(getStateLocation().append(MERGED_EEA_DIRNAME).toFile());
+        }
+        return archiveMerger;
+    }
+
+    /**
+     * Write the eea-for-gav index to the plugin state location, if it was
+     * loaded and changed since, so that not all of a long Eclipse session's
+     * probing is lost if it crashes.
+     */
+    public void saveMarkerIndex() {
+        final EeaMarkerIndex index;
+        synchronized (this) {
+            index = markerIndex;
+        }
+        // not while holding the lock, which the configurator needs for the index
+        if (index != null) {
+            index.save();
+        }
+    }
+
+    /**
+     * Index of eea-for-gav markers, loaded from the plugin state location on first use.
+     */
+    public synchronized EeaMarkerIndex getMarkerIndex() {
+        if (markerIndex == null) {
+            final File indexFile = getStateLocation().append(MARKER_INDEX_FILENAME).toFile();
+            markerIndex = new EeaMarkerIndex(indexFile, EeaFiles.EEA_FOR_GAV_FILENAME);
+            markerIndex.load();
+            LOGGER.debug("Loaded {} eea-for-gav index entries and {} JARs without from {}", markerIndex.size(),
+                    markerIndex.negativeSize(), indexFile);
+        }
+        return markerIndex;
+    }
+
+}
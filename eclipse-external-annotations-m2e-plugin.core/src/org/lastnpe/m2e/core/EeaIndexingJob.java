@@ -0,0 +1,289 @@
+package org.lastnpe.m2e.core;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.embedder.ArtifactKey;
+import org.eclipse.m2e.core.embedder.ILocalRepositoryListener;
+import org.eclipse.m2e.core.project.IMavenProjectFacade;
+import org.lastnpe.m2e.core.configurator.ArtifactResolutionCache;
+import org.lastnpe.m2e.core.configurator.EclipseWorkspace;
+import org.lastnpe.m2e.core.configurator.EeaConsumerIndex;
+import org.lastnpe.m2e.engine.CompilerPreferencesCache;
+import org.lastnpe.m2e.engine.EeaCatalog;
+import org.lastnpe.m2e.engine.EeaMarkerIndex;
+import org.lastnpe.m2e.engine.ExternalAnnotationsEngine;
+import org.lastnpe.m2e.engine.MarkerCache;
+import org.lastnpe.m2e.engine.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fills the {@link EeaMarkerIndex} in the background, so that the
+ * configurator, which runs while the user waits for an import or a Maven
+ * project update, finds the markers of (almost) all dependencies in memory,
+ * and only has to probe those which the index has not seen yet.
+ *
+ * <p>
+ * A full run, scheduled once the first configuration session of an Eclipse
+ * session ended, so that it does not compete with the configuration, and by
+ * the rebuild command, probes the dependencies of all Maven projects in the
+ * workspace. Artifacts installed into the local repository later, e.g. by a
+ * download or a <code>mvn install</code>, are queued by the
+ * {@link ILocalRepositoryListener} and probed in a run shortly afterwards.
+ * Artifacts whose stamp has not changed since they were indexed are not
+ * opened again, so a full run after a restart is cheap. The job runs at the
+ * lowest priority, and can be cancelled at any time; whatever was probed
+ * until then stays indexed.
+ *
+ * <p>
+ * Once a project uses the catalog of *-eea artifacts of the local
+ * repository, the job scans the repository for them, if that was not done
+ * in an earlier session, and keeps the catalog up to date with the artifacts
+ * installed later.
+ *
+ * <p>
+ * As the local repository listener, it also drops artifacts installed again
+ * from the {@link ArtifactResolutionCache}.
+ *
+ * <p>
+ * It also finishes the discovery of projects which ran out of their time
+ * budget (m2e.eea.discovery.budget): it indexes the classpath entries which
+ * were skipped, and then has the projects updated, which then find all
+ * markers in the index.
+ */
+public final class EeaIndexingJob extends Job implements ILocalRepositoryListener {
+
+    /** Job family, for {@link Job#getJobManager()}. */
+    public static final Object FAMILY = EeaIndexingJob.class;
+
+    private static final long DELAY_MS = 2000;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaIndexingJob.class);
+
+    private final EeaMarkerIndex markerIndex;
+    private final EeaConsumerIndex consumerIndex;
+    private final ArtifactResolutionCache resolutionCache;
+    private final ExternalAnnotationsEngine engine;
+    private final Metrics metrics = new Metrics();
+
+    private final Set<File> queued = new LinkedHashSet<>();
+    private final Set<IProject> queuedUpdates = new LinkedHashSet<>();
+    private final Set<IProject> deferred = ConcurrentHashMap.newKeySet();
+    private volatile Optional<EeaCatalog> catalog = Optional.empty();
+    private boolean full;
+    private boolean catalogScan;
+
+    /**
+     * @param consumerIndex to update the projects whose deferred discovery was finished
+     * @param resolutionCache to invalidate when artifacts are installed
+     */
+    public EeaIndexingJob(final EeaMarkerIndex markerIndex, final CompilerPreferencesCache compilerPreferences,
+            final EeaConsumerIndex consumerIndex, final ArtifactResolutionCache resolutionCache) {
+        super("Indexing External Annotations (eea-for-gav)");
+        this.markerIndex = markerIndex;
+        this.consumerIndex = consumerIndex;
+        this.resolutionCache = resolutionCache;
+        this.engine = new ExternalAnnotationsEngine(new EclipseWorkspace(), MarkerCache.NONE,
+                Optional.of(markerIndex), compilerPreferences, metrics);
+        setPriority(DECORATE);
+        setSystem(true);
+    }
+
+    /**
+     * Keep the catalog of *-eea artifacts up to date from now on, once a
+     * project uses it, scanning the repository first if it never was.
+     */
+    public void setCatalog(final EeaCatalog catalog) {
+        this.catalog = Optional.of(catalog);
+        if (!catalog.isScanned()) {
+            synchronized (queued) {
+                catalogScan = true;
+            }
+            schedule(DELAY_MS);
+        }
+    }
+
+    /**
+     * Update a project which was configured with the catalog before its
+     * first scan finished, once it has.
+     */
+    public void updateAfterCatalogScan(final IProject project) {
+        synchronized (queued) {
+            queuedUpdates.add(project);
+        }
+        schedule(DELAY_MS);
+    }
+
+    /**
+     * Index the dependencies of all Maven projects of the workspace, and, if
+     * the catalog of *-eea artifacts of the local repository is in use,
+     * rescan the repository and index those too.
+     */
+    public void scheduleFull() {
+        synchronized (queued) {
+            full = true;
+        }
+        schedule(DELAY_MS);
+    }
+
+    /**
+     * Index the given JARs or directories.
+     */
+    public void schedule(final List<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        synchronized (queued) {
+            queued.addAll(files);
+        }
+        schedule(DELAY_MS);
+    }
+
+    /**
+     * Index the classpath entries which the discovery of a project skipped
+     * because it ran out of time, then update the project.
+     */
+    public void scheduleDeferred(final IProject project, final List<File> files) {
+        deferred.add(project);
+        synchronized (queued) {
+            queued.addAll(files);
+            queuedUpdates.add(project);
+        }
+        schedule(DELAY_MS);
+    }
+
+    /**
+     * Whether the last discovery of a project ran out of time, which is
+     * forgotten by asking.
+     */
+    public boolean takeDeferred(final IProject project) {
+        return deferred.remove(project);
+    }
+
+    @Override
+    public void artifactInstalled(final File repositoryBasedir, final ArtifactKey baseArtifact,
+            final ArtifactKey artifact, final File artifactFile) {
+        if (artifactFile != null) {
+            resolutionCache.invalidate(artifactFile);
+        }
+        if (artifactFile != null && artifactFile.getName().endsWith(".jar")) {
+            if (EeaCatalog.isEeaJar(artifactFile)) {
+                catalog.ifPresent(c -> c.add(artifactFile));
+            }
+            schedule(List.of(artifactFile));
+        }
+    }
+
+    @Override
+    public boolean belongsTo(final Object family) {
+        return family == FAMILY;
+    }
+
+    @Override
+    protected IStatus run(final IProgressMonitor monitor) {
+        final Set<File> files;
+        final Set<IProject> updates;
+        final boolean runFull;
+        final boolean runCatalogScan;
+        synchronized (queued) {
+            files = new LinkedHashSet<>(queued);
+            queued.clear();
+            updates = new LinkedHashSet<>(queuedUpdates);
+            queuedUpdates.clear();
+            runFull = full;
+            full = false;
+            runCatalogScan = catalogScan;
+            catalogScan = false;
+        }
+        if (runFull) {
+            files.addAll(getWorkspaceDependencies());
+        }
+        if (runFull || runCatalogScan) {
+            catalog.ifPresent(c -> {
+                c.scan();
+                files.addAll(c.getJars());
+            });
+        }
+        final SubMonitor subMonitor = SubMonitor.convert(monitor, getName(), files.size());
+        final long hitsBefore = metrics.getCount(Metrics.MARKER_INDEX_HITS);
+        final long probedBefore = metrics.getCount(Metrics.MARKERS_PROBED);
+        try {
+            for (final File file : files) {
+                subMonitor.split(1);
+                if (file.exists()) {
+                    try {
+                        engine.getMarker(file);
+                    } catch (final IllegalArgumentException e) {
+                        LOGGER.error("Could not index {}", file, e);
+                    }
+                }
+            }
+        } catch (final OperationCanceledException e) {
+            requeue(files, updates, runFull, runCatalogScan);
+            return Status.CANCEL_STATUS;
+        } finally {
+            markerIndex.save();
+        }
+        if (!updates.isEmpty()) {
+            consumerIndex.update(updates);
+        }
+        LOGGER.debug("Indexed {} artifacts, {} already up to date, {} probed", files.size(),
+                metrics.getCount(Metrics.MARKER_INDEX_HITS) - hitsBefore,
+                metrics.getCount(Metrics.MARKERS_PROBED) - probedBefore);
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Cancelled by the user or at shutdown: what is left is not lost, in case
+     * the job is scheduled again later in this session.
+     */
+    private void requeue(final Set<File> files, final Set<IProject> updates, final boolean runFull,
+            final boolean runCatalogScan) {
+        synchronized (queued) {
+            queuedUpdates.addAll(updates);
+            if (runFull) {
+                full = true;
+            } else {
+                queued.addAll(files);
+            }
+            catalogScan |= runCatalogScan;
+        }
+    }
+
+    /**
+     * The resolved dependency artifacts of all Maven projects of the workspace,
+     * as known to M2E, without resolving anything.
+     */
+    private static List<File> getWorkspaceDependencies() {
+        final Set<File> files = new LinkedHashSet<>();
+        for (final IMavenProjectFacade facade : MavenPlugin.getMavenProjectRegistry().getProjects()) {
+            final MavenProject mavenProject = facade.getMavenProject();
+            if (mavenProject == null || mavenProject.getArtifacts() == null) {
+                continue;
+            }
+            for (final Artifact artifact : mavenProject.getArtifacts()) {
+                if (artifact.getFile() != null) {
+                    files.add(artifact.getFile());
+                }
+            }
+        }
+        return new ArrayList<>(files);
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.lastnpe.m2e.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.osgi.service.debug.DebugOptions;
+import org.eclipse.osgi.service.debug.DebugOptionsListener;
+import org.eclipse.osgi.service.debug.DebugTrace;
+import org.lastnpe.m2e.engine.Metrics;
+
+/**
+ * Tracing options of this plugin, see the .options file; enable them on the
+ * Tracing tab of a launch configuration, or with -debug and a .options file.
+ *
+ * <p>
+ * {@value #OPTION_TIMING} traces how long each configurator call took, and
+ * {@value #OPTION_METRICS} traces the {@link Metrics} summary of each
+ * configuration session when it ends.
+ */
+public final class Tracing implements DebugOptionsListener {
+
+    public static final String OPTION_DEBUG = Activator.PLUGIN_ID + "/debug";
+    public static final String OPTION_TIMING = OPTION_DEBUG + "/timing";
+    public static final String OPTION_METRICS = OPTION_DEBUG + "/metrics";
+
+    private static volatile DebugTrace trace;
+    private static volatile boolean timing;
+    private static volatile boolean metrics;
+
+    @Override
+    public void optionsChanged(final DebugOptions options) {
+        final boolean debug = options.getBooleanOption(OPTION_DEBUG, false);
+        trace = options.newDebugTrace(Activator.PLUGIN_ID, Tracing.class);
+        timing = debug && options.getBooleanOption(OPTION_TIMING, false);
+        metrics = debug && options.getBooleanOption(OPTION_METRICS, false);
+    }
+
+    /**
+     * Time a configurator call, recording it in the session metrics, and tracing it if enabled.
+     *
+     * @param subject what it is called for, e.g. the project
+     */
+    public static <E extends Exception> void time(final Metrics sessionMetrics, final String operation,
+            final Object subject, final Metrics.TimedRun<E> call) throws E {
+        final long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            sessionMetrics.record(operation, elapsed);
+            final DebugTrace debugTrace = trace;
+            if (timing && debugTrace != null) {
+                debugTrace.trace(OPTION_TIMING, operation + " of " + subject + " took "
+                        + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms");
+            }
+        }
+    }
+
+    /**
+     * Trace the summary of a configuration session, if enabled.
+     */
+    public static void sessionEnded(final Object session, final Metrics sessionMetrics) {
+        final DebugTrace debugTrace = trace;
+        if (metrics && debugTrace != null) {
+            debugTrace.trace(OPTION_METRICS, "Configuration session " + session + ":\n" + sessionMetrics.getSummary());
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+
+/**
+ * Resolved artifacts, remembered for as long as Eclipse runs.
+ *
+ * <p>
+ * Entries are keyed by groupId, artifactId, version, type, classifier and the
+ * URLs of the repositories they were resolved from. A lookup does not check
+ * the file: entries are dropped when m2e reports that their file was installed
+ * into the local repository again, see {@link #invalidate(File)}, which is
+ * called by the local repository listener of the
+ * {@link org.lastnpe.m2e.core.EeaIndexingJob}. What m2e does not see, e.g. a
+ * local repository deleted by hand, is forgotten together with the eea-for-gav
+ * index by the Clear and Rebuild commands. Only fixed versions can be cached
+ * like this: a SNAPSHOT or a version range may resolve to something else
+ * tomorrow without the file we already have changing, see
+ * {@link #isCacheable(String)}.
+ */
+public class ArtifactResolutionCache {
+
+    private final Map<List<String>, Artifact> entries = new ConcurrentHashMap<>();
+
+    public static boolean isCacheable(final String version) {
+        return version != null && !version.isEmpty() && !version.endsWith(Artifact.SNAPSHOT_VERSION)
+                && !Artifact.LATEST_VERSION.equals(version) && !Artifact.RELEASE_VERSION.equals(version)
+                && version.indexOf('[') < 0 && version.indexOf('(') < 0;
+    }
+
+    public Optional<Artifact> get(final String groupId, final String artifactId, final String version,
+            final String type, final String classifier, final List<ArtifactRepository> repositories) {
+        return Optional.ofNullable(entries.get(key(groupId, artifactId, version, type, classifier, repositories)));
+    }
+
+    public void put(final String groupId, final String artifactId, final String version, final String type,
+            final String classifier, final List<ArtifactRepository> repositories, final Artifact artifact) {
+        if (artifact == null || !artifact.isResolved() || artifact.getFile() == null || !isCacheable(version)) {
+            return;
+        }
+        entries.put(key(groupId, artifactId, version, type, classifier, repositories), artifact);
+    }
+
+    /**
+     * Forget the artifacts resolved to a file which was (re)installed into the
+     * local repository.
+     */
+    public void invalidate(final File artifactFile) {
+        entries.values().removeIf(artifact -> artifactFile.equals(artifact.getFile()));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    static List<String> key(final String groupId, final String artifactId, final String version,
+            final String type, final String classifier, final List<ArtifactRepository> repositories) {
+        final String repositoryUrls = repositories == null ? ""
+                : repositories.stream().map(ArtifactRepository::getUrl).collect(Collectors.joining(","));
+        return Arrays.asList(groupId, artifactId, version, type, classifier, repositoryUrls);
+    }
+
+}
@@ -1,44 +1,48 @@
 package org.lastnpe.m2e.core.configurator;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringReader;
-import java.net.URI;
-import java.nio.charset.Charset;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
 import java.util.stream.Collectors;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.maven.RepositoryUtils;
 import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.model.Plugin;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.util.xml.Xpp3Dom;
 import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IResource;
-import org.eclipse.core.resources.IWorkspace;
-import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IClasspathAttribute;
 import org.eclipse.jdt.core.IClasspathEntry;
 import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.m2e.core.embedder.ArtifactKey;
+import org.eclipse.m2e.core.embedder.IMavenExecutionContext;
 import org.eclipse.m2e.core.project.IMavenProjectFacade;
 import org.eclipse.m2e.core.project.MavenProjectChangedEvent;
 import org.eclipse.m2e.core.project.configurator.AbstractProjectConfigurator;
@@ -46,6 +50,16 @@ import org.eclipse.m2e.core.project.configurator.ProjectConfigurationRequest;
 import org.eclipse.m2e.jdt.IClasspathDescriptor;
 import org.eclipse.m2e.jdt.IClasspathEntryDescriptor;
 import org.eclipse.m2e.jdt.IJavaProjectConfigurator;
+import org.lastnpe.m2e.core.Activator;
+import org.lastnpe.m2e.core.Tracing;
+import org.lastnpe.m2e.engine.AnnotationPathEvent;
+import org.lastnpe.m2e.engine.ArtifactResolver;
+import org.lastnpe.m2e.engine.ClasspathEntry;
+import org.lastnpe.m2e.engine.EeaCatalog;
+import org.lastnpe.m2e.engine.ExternalAnnotationsEngine;
+import org.lastnpe.m2e.engine.Metrics;
+import org.lastnpe.m2e.engine.PrecomputedManifest;
+import org.lastnpe.m2e.engine.ResolveEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -58,9 +72,7 @@ import org.slf4j.LoggerFactory;
  */
 public class ClasspathConfigurator extends AbstractProjectConfigurator implements IJavaProjectConfigurator {
 
-    private static final Pattern NEWLINE_REGEXP = Pattern.compile("\\n");
-    private static final MavenGAV JAVA_GAV = MavenGAV.of("java", "java");
-    private static final String EEA_FOR_GAV_FILENAME = "eea-for-gav";
+    private static final EclipseWorkspace WORKSPACE = new EclipseWorkspace();
 
     /*
      * Classpath
@@ -68,171 +80,255 @@ public class ClasspathConfigurator extends AbstractProjectConfigurator implement
     private static final String JRE_CONTAINER = "org.eclipse.jdt.launching.JRE_CONTAINER";
     private static final String MAVEN_CLASSPATH_CONTAINER = "org.eclipse.m2e.MAVEN2_CLASSPATH_CONTAINER";
     private static final String PDE_REQUIRED_PLUGINS = "org.eclipse.pde.core.requiredPlugins";
+    private static final String ANNOTATIONPATH_ATTRIBUTE = "annotationpath";
 
     /*
      * Maven properties
      */
     private static final String M2E_JDT_ANNOTATIONPATH = "m2e.jdt.annotationpath";
+    private static final String M2E_EEA_ANNOTATIONPATH_PREFIX = "m2e.eea.annotationpath.";
     private static final String M2E_EEA_ANNOTATIONPATH_JRE = "m2e.eea.annotationpath.jre";
     private static final String M2E_EEA_ANNOTATIONPATH_MVN = "m2e.eea.annotationpath.maven";
     private static final String M2E_EEA_ANNOTATIONPATH_PDE = "m2e.eea.annotationpath.pde";
+    private static final String M2E_EEA_DISCOVERY_PARALLELISM = "m2e.eea.discovery.parallelism";
+    private static final String M2E_EEA_DISCOVERY_BUDGET = "m2e.eea.discovery.budget";
+    private static final String M2E_EEA_CATALOG = "m2e.eea.catalog";
+    private static final String M2E_EEA_MANIFEST = "m2e.eea.manifest";
 
     private final static Logger LOGGER = LoggerFactory.getLogger(ClasspathConfigurator.class);
 
     @Override
     public void configureClasspath(final IMavenProjectFacade mavenProjectFacade, final IClasspathDescriptor classpath,
             final IProgressMonitor monitor) throws CoreException {
-        final List<IPath> classpathEntryPaths = classpath.getEntryDescriptors().stream()
-                .map(cpEntry -> cpEntry.getPath()).collect(Collectors.toList());
-        final Map<MavenGAV, IPath> mapping = getExternalAnnotationMapping(classpathEntryPaths);
-        for (final IClasspathEntryDescriptor cpEntry : classpath.getEntryDescriptors()) {
-            mapping.entrySet().stream().filter(e -> e.getKey().matches(cpEntry.getArtifactKey())).findFirst()
-                    .ifPresent(e -> {
-                        setExternalAnnotationsPath(cpEntry, e.getValue().toString());
-                    });
+        final List<ClasspathEntryAdapter> classpathEntries = classpath.getEntryDescriptors().stream()
+                .map(ClasspathEntryAdapter::new).collect(Collectors.toList());
+        try (ConfigurationSession session = ConfigurationSession.open()) {
+            Tracing.time(session.getMetrics(), "configureClasspath", mavenProjectFacade.getProject().getName(), () -> {
+                final IProject project = mavenProjectFacade.getProject();
+                if (applyPrecomputedEntryAnnotations(session, mavenProjectFacade, classpathEntries)) {
+                    recordSources(project, classpathEntries);
+                    return;
+                }
+                final int parallelism = getIntProperty(mavenProjectFacade, M2E_EEA_DISCOVERY_PARALLELISM, 1);
+                final List<String> deferred = newEngine(session).configureClasspath(classpathEntries, parallelism,
+                        getCatalog(mavenProjectFacade),
+                        new MonitorProgress(monitor, "Discovering External Annotations"),
+                        getBudget(mavenProjectFacade, project));
+                recordSources(project, classpathEntries);
+                if (!deferred.isEmpty()) {
+                    finishInBackground(project, deferred);
+                }
+            });
+        } catch (final CancellationException e) {
+            throw new OperationCanceledException(e.getMessage());
         }
         // Do *NOT* configure the JRE's EEA here, but in configureRawClasspath(),
         // because it's the wrong time for M2E (and will break project import,
         // when the IProject doesn't fully exist in JDT yet at this stage).
     }
 
-    private void setExternalAnnotationsPath(final IClasspathEntryDescriptor cpEntry, final String path) {
-        cpEntry.setClasspathAttribute("annotationpath", path);
-        if (LOGGER.isInfoEnabled()) {
-            LOGGER.info("Setting External Annotations of {} to {}", toString(cpEntry), path);
-        }
+    /**
+     * How long discovery may take for a project, from the
+     * m2e.eea.discovery.budget property, in milliseconds; unlimited (0) if
+     * the last discovery of the project ran out of time, so that the update
+     * which finishes it in the background does not run out again.
+     */
+    private long getBudget(final IMavenProjectFacade mavenProjectFacade, final IProject project) {
+        final int budget = getIntProperty(mavenProjectFacade, M2E_EEA_DISCOVERY_BUDGET, 0);
+        final Activator activator = Activator.getDefault();
+        if (budget > 0 && activator != null && activator.getIndexingJob().takeDeferred(project)) {
+            LOGGER.debug("Finishing deferred discovery of {} without time budget", project.getName());
+            return 0;
+        }
+        return budget;
     }
 
-    private Map<MavenGAV, IPath> getExternalAnnotationMapping(final List<IPath> classpathEntryPaths) {
-        final Map<MavenGAV, IPath> mapping = new HashMap<>();
-        for (final IPath cpEntryPath : classpathEntryPaths) {
-            final Optional<File> optionalFileOrDirectory = toFile(cpEntryPath);
-            optionalFileOrDirectory.ifPresent(fileOrDirectory -> {
-                getExternalAnnotationMapping(fileOrDirectory).forEach(gav -> mapping.put(gav, cpEntryPath));
-            });
+    /**
+     * Probe the classpath entries which discovery skipped because it ran out
+     * of time in the background, then configure the project again.
+     */
+    private void finishInBackground(final IProject project, final List<String> deferred) {
+        final Activator activator = Activator.getDefault();
+        if (activator == null) {
+            LOGGER.warn("External Annotations of {} may be incomplete, {} classpath entries were not probed",
+                    project.getName(), deferred.size());
+            return;
         }
-        return mapping;
+        final List<File> files = deferred.stream().map(WORKSPACE::getLocation).filter(Optional::isPresent)
+                .map(Optional::get).collect(Collectors.toList());
+        activator.getIndexingJob().scheduleDeferred(project, files);
     }
 
-    private List<MavenGAV> getExternalAnnotationMapping(final File dependency) {
-        final List<String> gavLines = readLines(dependency, EEA_FOR_GAV_FILENAME);
-        final List<MavenGAV> result = new ArrayList<>(gavLines.size());
-        gavLines.forEach(line -> {
-            try {
-                final MavenGAV gav = MavenGAV.parse(line);
-                LOGGER.info("Found EEA for {} in {}", gav, dependency);
-                result.add(gav);
-            } catch (final IllegalArgumentException e) {
-                throw new IllegalArgumentException(
-                        "Bad line in " + EEA_FOR_GAV_FILENAME + " of " + dependency + ": " + line, e);
-            }
-        });
-        return result;
+    /**
+     * Set the annotation paths which the precompute goal recorded in the
+     * manifest of the m2e.eea.manifest property, instead of discovering them,
+     * if the classpath entries are still the same, which does not open any of
+     * them. Not with the catalog, which the goal does not know about.
+     *
+     * @return whether they were set
+     */
+    private boolean applyPrecomputedEntryAnnotations(final ConfigurationSession session,
+            final IMavenProjectFacade mavenProjectFacade, final List<ClasspathEntryAdapter> classpathEntries) {
+        if (Boolean.parseBoolean(getProjectProperty(mavenProjectFacade, M2E_EEA_CATALOG))) {
+            return false;
+        }
+        final Optional<PrecomputedManifest.Module> module = getPrecomputed(mavenProjectFacade.getMavenProject());
+        if (!module.isPresent()) {
+            return false;
+        }
+        if (!newEngine(session).applyPrecomputed(module.get(), classpathEntries)) {
+            LOGGER.debug("Classpath of {} changed since the EEA manifest was computed",
+                    mavenProjectFacade.getProject().getName());
+            return false;
+        }
+        return true;
     }
 
-    private List<String> readLines(final File fileOrDirectory, final String fileName) {
-        final Optional<String> fileContent = read(fileOrDirectory, fileName);
-        if (fileContent.isPresent()) {
-            return readLines(fileContent.get());
-        } else {
-            return Collections.emptyList();
+    /**
+     * What the precompute goal recorded for a project, in the manifest of its
+     * m2e.eea.manifest property, which is relative to its base directory,
+     * unless absolute.
+     */
+    private Optional<PrecomputedManifest.Module> getPrecomputed(final MavenProject mavenProject) {
+        final String path = getProjectProperty(mavenProject, M2E_EEA_MANIFEST);
+        if (path == null || path.isEmpty()) {
+            return Optional.empty();
         }
+        File file = new File(path);
+        if (!file.isAbsolute() && mavenProject.getBasedir() != null) {
+            file = new File(mavenProject.getBasedir(), path);
+        }
+        final Activator activator = Activator.getDefault();
+        final Optional<PrecomputedManifest> manifest = activator == null ? PrecomputedManifestCache.read(file)
+                : activator.getPrecomputedManifestCache().get(file);
+        return manifest.flatMap(m -> m.getModule(mavenProject.getGroupId(), mavenProject.getArtifactId()));
     }
 
-    private Optional<File> toFile(final IPath iPath) {
-        // iPath.toFile() is NOT what we want..
-        // https://wiki.eclipse.org/FAQ_What_is_the_difference_between_a_path_and_a_location%3F
-        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-        final IWorkspaceRoot root = workspace.getRoot();
-        final IResource resource = root.findMember(iPath);
-        if (resource != null) {
-            final IPath location = resource.getLocation();
-            return Optional.ofNullable(location.toFile());
-        } else {
-            // In this case iPath likely was an absolute FS / non-WS path to being with (or a closed project), so try:
-            return Optional.ofNullable(iPath.toFile());
-        }
+    /**
+     * The {@link PrecomputedManifest#hash(List)} of (*-eea or
+     * maven-compiler-plugin) dependencies, by their coordinates and artifacts.
+     */
+    private String hashDependencies(final ConfigurationSession session, final List<Dependency> dependencies,
+            final ArtifactResolver<Dependency, CoreException> resolver) throws CoreException {
+        return newEngine(session).hashDependencies(dependencies, ClasspathConfigurator::toManifestCoordinates,
+                resolver);
+    }
+
+    private static String toManifestCoordinates(final Dependency dependency) {
+        return PrecomputedManifest.coordinates(dependency.getGroupId(), dependency.getArtifactId(),
+                dependency.getVersion(), dependency.getClassifier());
     }
 
     /**
-     * Reads content of a name file from either inside a JAR or a directory
-     *
-     * @param fileOrDirectory either a ZIP/JAR file, or a directory
-     * @param fileName file to look for in that ZIP/JAR file or directory
-     * @return content of file, if any
+     * Remember which workspace projects with a marker and which EEA archives
+     * the classpath of a project uses, so that it is reconfigured if their
+     * markers change.
      */
-    private Optional<String> read(final File fileOrDirectory, final String fileName) {
-        if (!fileOrDirectory.exists()) {
-            LOGGER.error("File does not exist: {}", fileOrDirectory);
-            return Optional.empty();
+    private void recordSources(final IProject project, final List<ClasspathEntryAdapter> classpathEntries) {
+        final Activator activator = Activator.getDefault();
+        if (activator == null) {
+            return;
         }
-        if (fileOrDirectory.isDirectory()) {
-            final File file = new File(fileOrDirectory, fileName);
-            return readFile(file.toPath());
-        } else if (fileOrDirectory.isFile()) {
-            try (ZipFile jar = new ZipFile(fileOrDirectory)) {
-                ZipEntry entry = jar.getEntry(fileName);
-                if (entry == null) {
-                    return Optional.empty();
-                }
-                try (InputStream is = jar.getInputStream(entry)) {
-                    return Optional.of(IOUtils.toString(is, "UTF-8"));
-                }
-            } catch (final IOException e) {
-                LOGGER.error("IOException from ZipFile for: {}!{}", fileOrDirectory, fileName, e);
-                return Optional.empty();
+        final Set<IPath> sources = new LinkedHashSet<>();
+        for (final ClasspathEntryAdapter entry : classpathEntries) {
+            if (entry.cpEntry.getEntryKind() == IClasspathEntry.CPE_PROJECT
+                    && EeaConsumerIndex.hasMarker(ResourcesPlugin.getWorkspace(), entry.cpEntry.getPath())) {
+                sources.add(entry.cpEntry.getPath());
+            }
+            if (entry.annotationPath != null) {
+                sources.add(Path.fromOSString(entry.annotationPath));
             }
-        } else {
-            LOGGER.error("File is neither a directory nor a file: {}", fileOrDirectory);
-            return Optional.empty();
         }
-
+        activator.getConsumerIndex().setSources(project, sources);
     }
 
-    private Optional<String> readFile(final Path path) {
-        try {
-            if (Files.exists(path)) {
-                return Optional.of(new String(Files.readAllBytes(path), Charset.forName("UTF-8")));
-            } else {
-                return Optional.empty();
-            }
-        } catch (final IOException e) {
-            LOGGER.error("IOException from Files.readAllBytes for: {}", path, e);
-            return Optional.empty();
+    private void setExternalAnnotationsPath(final IClasspathEntryDescriptor cpEntry, final String path) {
+        final AnnotationPathEvent event = new AnnotationPathEvent();
+        event.begin();
+        cpEntry.setClasspathAttribute(ANNOTATIONPATH_ATTRIBUTE, path);
+        if (event.shouldCommit()) {
+            event.path = cpEntry.getPath() == null ? null : cpEntry.getPath().toString();
+            event.annotationPath = path;
+            event.commit();
+        }
+        if (LOGGER.isInfoEnabled()) {
+            LOGGER.info("Setting External Annotations of {} to {}", toString(cpEntry), path);
         }
     }
 
-    private List<String> readLines(final String string) {
-        return NEWLINE_REGEXP.splitAsStream(string).map(t -> t.trim()).filter(t -> !t.isEmpty())
-                .filter(t -> !t.startsWith("#")).collect(Collectors.toList());
+    private ExternalAnnotationsEngine newEngine(final ConfigurationSession session) {
+        final Activator activator = Activator.getDefault();
+        return new ExternalAnnotationsEngine(WORKSPACE, session,
+                activator == null ? Optional.empty() : Optional.of(activator.getMarkerIndex()),
+                session.getCompilerPreferences(), session.getMetrics());
+    }
+
+    /**
+     * Resolves dependencies for the engine, through the session.
+     */
+    private ArtifactResolver<Dependency, CoreException> newResolver(final ConfigurationSession session,
+            final MavenProject mavenProject, final IProgressMonitor monitor) {
+        final List<ArtifactRepository> repositories = mavenProject.getRemoteArtifactRepositories();
+        return dependency -> {
+            final Artifact artifact = resolve(session, dependency, repositories, monitor);
+            if (artifact != null && artifact.isResolved()) {
+                return Optional.of(artifact.getFile());
+            }
+            return Optional.empty();
+        };
     }
 
     @Override
     public void configureRawClasspath(final ProjectConfigurationRequest request, final IClasspathDescriptor classpath,
             final IProgressMonitor monitor) throws CoreException {
-        final IMavenProjectFacade mavenProjectFacade = request.mavenProjectFacade();
+        try (ConfigurationSession session = ConfigurationSession.open()) {
+            Tracing.time(session.getMetrics(), "configureRawClasspath",
+                    request.mavenProjectFacade().getProject().getName(), () -> {
+                for (final ContainerAnnotationPath containerAnnotationPath : getContainerAnnotationPaths(session,
+                        request.mavenProjectFacade(), request.mavenProject(), monitor)) {
+                    setContainerClasspathExternalAnnotationsPath(classpath, containerAnnotationPath.annotationPath,
+                            containerAnnotationPath.startsWith);
+                }
+            });
+        } catch (final CancellationException e) {
+            throw new OperationCanceledException(e.getMessage());
+        }
+    }
 
+    /**
+     * Determine the external annotations of the classpath containers (JRE, Maven
+     * Dependencies, PDE) from the properties or the *-eea dependencies of a
+     * Maven project.
+     *
+     * @param mavenProjectFacade the project to resolve dependencies up front for, if not null
+     * @return the annotation paths to set, in the order in which to set them
+     */
+    private List<ContainerAnnotationPath> getContainerAnnotationPaths(final ConfigurationSession session,
+            final IMavenProjectFacade mavenProjectFacade, final MavenProject mavenProject,
+            final IProgressMonitor monitor) throws CoreException {
         /*
          * First check for the property for one global path for all classpaths.
          */
 
-        if (setContainerClasspathEeaPath(classpath, mavenProjectFacade, M2E_JDT_ANNOTATIONPATH, Optional.empty())) {
-            return;
+        final String annotationPath = getProjectProperty(mavenProject, M2E_JDT_ANNOTATIONPATH);
+        if (annotationPath != null && !annotationPath.isEmpty()) {
+            return Collections.singletonList(
+                    new ContainerAnnotationPath(mergeIfSeveral(session, annotationPath), Optional.empty()));
         }
 
         /*
          * If the above has not been set, check if there are properties for specific classpaths.
          */
 
-        boolean hasProp = false;
-        hasProp |= setContainerClasspathEeaPath(classpath, mavenProjectFacade, M2E_EEA_ANNOTATIONPATH_JRE,
-                Optional.of(JRE_CONTAINER));
-        hasProp |= setContainerClasspathEeaPath(classpath, mavenProjectFacade, M2E_EEA_ANNOTATIONPATH_MVN,
-                Optional.of(MAVEN_CLASSPATH_CONTAINER));
-        hasProp |= setContainerClasspathEeaPath(classpath, mavenProjectFacade, M2E_EEA_ANNOTATIONPATH_PDE,
-                Optional.of(PDE_REQUIRED_PLUGINS));
-        if (hasProp) {
-            return;
+        final List<ContainerAnnotationPath> containerAnnotationPaths = new ArrayList<>(3);
+        addContainerAnnotationPath(session, containerAnnotationPaths, mavenProject, M2E_EEA_ANNOTATIONPATH_JRE,
+                JRE_CONTAINER);
+        addContainerAnnotationPath(session, containerAnnotationPaths, mavenProject, M2E_EEA_ANNOTATIONPATH_MVN,
+                MAVEN_CLASSPATH_CONTAINER);
+        addContainerAnnotationPath(session, containerAnnotationPaths, mavenProject, M2E_EEA_ANNOTATIONPATH_PDE,
+                PDE_REQUIRED_PLUGINS);
+        if (!containerAnnotationPaths.isEmpty()) {
+            return containerAnnotationPaths;
         }
 
         /*
@@ -245,63 +341,248 @@ public class ClasspathConfigurator extends AbstractProjectConfigurator implement
         // (that happens in configureClasspath() not here in configureRawClasspath())
         //
 
-        final Optional<String> cpe = Optional.of(JRE_CONTAINER);
+        warmResolutionCache(session, mavenProjectFacade, mavenProject, monitor);
+        final List<Dependency> eeaDependencies = getEeaDependencies(mavenProject);
+        final ArtifactResolver<Dependency, CoreException> resolver = newResolver(session, mavenProject, monitor);
+        final Optional<Optional<String>> precomputed = getPrecomputedJreAnnotationPath(session, mavenProject,
+                eeaDependencies, resolver);
+        return (precomputed.isPresent() ? precomputed.get()
+                : newEngine(session).findJreAnnotationPath(eeaDependencies, resolver,
+                        new MonitorProgress(monitor, "Looking for the External Annotations of the JRE")))
+                .map(jreAnnotationPath -> Collections
+                        .singletonList(new ContainerAnnotationPath(jreAnnotationPath, Optional.of(JRE_CONTAINER))))
+                .orElse(Collections.emptyList());
+    }
 
-        final MavenProject mavenProject = request.mavenProject();
-        for (final Dependency dependency : mavenProject.getDependencies()) {
-            // Filter by "*-eea" artifactId naming convention, just for performance
-            if (!dependency.getArtifactId().endsWith("-eea")) {
-                continue;
-            }
-            final Artifact artifact = maven.resolve(dependency.getGroupId(), dependency.getArtifactId(),
-                    dependency.getVersion(), dependency.getType(), dependency.getClassifier(),
-                    mavenProject.getRemoteArtifactRepositories(), monitor);
-            if (artifact != null && artifact.isResolved()) {
-                final File eeaProjectOrJarFile = artifact.getFile();
-                if (getExternalAnnotationMapping(eeaProjectOrJarFile).contains(JAVA_GAV)) {
-                    final IPath iPath = getProjectPathFromAbsoluteLocationIfPossible(eeaProjectOrJarFile);
-                    setContainerClasspathExternalAnnotationsPath(classpath, iPath.toString(), cpe);
-                    return;
+    /**
+     * The annotationpath of the JRE which the precompute goal recorded, if the
+     * *-eea dependencies are still the same.
+     *
+     * @return empty if discovery has to find it, else the annotationpath, if any
+     */
+    private Optional<Optional<String>> getPrecomputedJreAnnotationPath(final ConfigurationSession session,
+            final MavenProject mavenProject, final List<Dependency> eeaDependencies,
+            final ArtifactResolver<Dependency, CoreException> resolver) throws CoreException {
+        final Optional<PrecomputedManifest.Module> module = getPrecomputed(mavenProject);
+        if (!module.isPresent()) {
+            return Optional.empty();
+        }
+        final Optional<Optional<String>> jreAnnotations = module.get()
+                .getJreAnnotations(hashDependencies(session, eeaDependencies, resolver));
+        session.getMetrics().increment(jreAnnotations.isPresent() ? Metrics.MANIFEST_HITS : Metrics.MANIFEST_MISSES);
+        if (!jreAnnotations.isPresent() || !jreAnnotations.get().isPresent()) {
+            return jreAnnotations;
+        }
+        for (final Dependency dependency : eeaDependencies) {
+            if (toManifestCoordinates(dependency).equals(jreAnnotations.get().get())) {
+                final Optional<File> file = resolver.resolve(dependency);
+                if (file.isPresent()) {
+                    return Optional.of(Optional.of(WORKSPACE.getAnnotationPath(file.get())));
                 }
             }
         }
+        return Optional.empty();
+    }
+
+    private void addContainerAnnotationPath(final ConfigurationSession session,
+            final List<ContainerAnnotationPath> containerAnnotationPaths, final MavenProject mavenProject,
+            final String mavenPropertyName, final String startsWith) {
+        final String annotationPath = getProjectProperty(mavenProject, mavenPropertyName);
+        if (annotationPath != null && !annotationPath.isEmpty()) {
+            containerAnnotationPaths.add(
+                    new ContainerAnnotationPath(mergeIfSeveral(session, annotationPath), Optional.of(startsWith)));
+        }
     }
 
     /**
-     * Attempt to convert an absolute File to a workspace relative project path.
+     * A container takes only one annotationpath, so if a property lists
+     * several comma separated EEA archives or directories (workspace or file
+     * system paths, the first one winning for classes they have in common),
+     * they are merged into one archive in the plugin state location, which is
+     * shared by all projects listing the same ones, and only rebuilt when one
+     * of them changes.
      *
-     * @param file a File pointing either to a JAR file in the Maven repo, or a project on disk
-     * @return IPath which will either be workspace relative if match found, else same location (absolute)
+     * @return the annotationpath to set
      */
-    private IPath getProjectPathFromAbsoluteLocationIfPossible(File file) {
-        final Path targetClassesPath = Paths.get("target", "classes");
-        if (file.toPath().endsWith(targetClassesPath)) {
-            file = file.getParentFile().getParentFile();
-        }
-        final URI fileURI = file.toURI().normalize();
-        final IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
-        for (final IProject project : projects) {
-            if (!project.isOpen()) {
-                continue;
+    private String mergeIfSeveral(final ConfigurationSession session, final String annotationPaths) {
+        if (annotationPaths.indexOf(',') < 0) {
+            return annotationPaths;
+        }
+        final List<String> paths = Arrays.stream(annotationPaths.split(",")).map(String::trim)
+                .filter(p -> !p.isEmpty()).collect(Collectors.toList());
+        if (paths.size() < 2) {
+            return paths.isEmpty() ? annotationPaths : paths.get(0);
+        }
+        final Activator activator = Activator.getDefault();
+        if (activator == null) {
+            LOGGER.warn("Cannot merge External Annotations outside of Eclipse, using only {}", paths.get(0));
+            return paths.get(0);
+        }
+        final List<File> inputs = new ArrayList<>(paths.size());
+        for (final String path : paths) {
+            final Optional<File> location = WORKSPACE.getLocation(path);
+            if (location.isPresent() && location.get().exists()) {
+                inputs.add(location.get());
+            } else {
+                LOGGER.warn("Ignoring External Annotations which do not exist: {}", path);
+            }
+        }
+        if (inputs.size() < 2) {
+            return inputs.isEmpty() ? paths.get(0) : inputs.get(0).getAbsolutePath();
+        }
+        return session.getMergedArchive(inputs, i -> {
+            try {
+                return Optional.of(activator.getEeaArchiveMerger().merge(i));
+            } catch (final IOException e) {
+                LOGGER.error("Could not merge External Annotations of {}", i, e);
+                return Optional.empty();
+            }
+        }).map(File::getAbsolutePath).orElse(paths.get(0));
+    }
+
+    private List<Dependency> getEeaDependencies(final MavenProject mavenProject) {
+        // Filter by "*-eea" artifactId naming convention, just for performance
+        return mavenProject.getDependencies().stream().filter(d -> d.getArtifactId().endsWith("-eea"))
+                .collect(Collectors.toList());
+    }
+
+    private List<Dependency> getCompilerPluginDependencies(final MavenProject mavenProject) {
+        final Plugin plugin = mavenProject.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        if (plugin == null) {
+            return Collections.emptyList();
+        }
+        // Skipping tycho-compiler-jdt is just an optimization to save the unneeded resolve()
+        return plugin.getDependencies().stream().filter(d -> !"tycho-compiler-jdt".equals(d.getArtifactId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Resolve all dependencies which configureRawClasspath() and configure()
+     * need into the session's resolution caches, the first time either of them
+     * runs for a project in a configuration session, so that they only have to
+     * look them up. Those which are not cached yet are resolved in one request
+     * to the repository system, which downloads whatever is missing in
+     * parallel, instead of one {@code IMaven.resolve()} after the other.
+     * Failures are left for those to report when they resolve the dependency
+     * themselves.
+     */
+    private void warmResolutionCache(final ConfigurationSession session, final IMavenProjectFacade mavenProjectFacade,
+            final MavenProject mavenProject, final IProgressMonitor monitor) {
+        if (mavenProjectFacade == null
+                || !session.startWarmingResolutionCache(mavenProjectFacade.getProject().getName())) {
+            return;
+        }
+        final List<ArtifactRepository> repositories = mavenProject.getRemoteArtifactRepositories();
+        final List<Dependency> candidates = new ArrayList<>(getEeaDependencies(mavenProject));
+        candidates.addAll(getCompilerPluginDependencies(mavenProject));
+        final List<Dependency> dependencies = candidates.stream()
+                .filter(d -> !session.getResolved(d.getGroupId(), d.getArtifactId(), d.getVersion(), d.getType(),
+                        d.getClassifier(), repositories).isPresent())
+                .collect(Collectors.toList());
+        if (dependencies.isEmpty()) {
+            return;
+        }
+        final Metrics metrics = session.getMetrics();
+        metrics.increment(Metrics.RESOLVE_CALLS);
+        // one event per artifact, which all last as long as the request
+        final List<ResolveEvent> events = new ArrayList<>();
+        for (int i = 0; i < dependencies.size(); i++) {
+            final ResolveEvent event = new ResolveEvent();
+            event.begin();
+            events.add(event);
+        }
+        final List<ArtifactResult> results;
+        try {
+            results = metrics.time(Metrics.RESOLVE, () -> maven.createExecutionContext().execute(
+                    (context, m) -> resolveArtifacts(context, mavenProject, dependencies),
+                    SubMonitor.convert(monitor, "Resolving External Annotations dependencies", 1)));
+        } catch (final CoreException | RuntimeException e) {
+            for (int i = 0; i < dependencies.size(); i++) {
+                commit(events.get(i), dependencies.get(i), null, ResolveEvent.ERROR);
             }
-            final URI locationURI = project.getLocationURI().normalize();
-            // The follow circus is because of a trailing slash difference:
-            if (Paths.get(locationURI).equals(Paths.get(fileURI))) {
-                return project.getFullPath();
+            LOGGER.debug("Could not resolve the External Annotations dependencies of {}", mavenProject, e);
+            return;
+        }
+        for (int i = 0; i < results.size(); i++) {
+            final Dependency dependency = dependencies.get(i);
+            final ArtifactResult result = results.get(i);
+            if (!result.isResolved()) {
+                commit(events.get(i), dependency, null, ResolveEvent.UNRESOLVED);
+                continue;
             }
+            final Artifact artifact = RepositoryUtils.toArtifact(result.getArtifact());
+            commit(events.get(i), dependency, artifact, ResolveEvent.RESOLVED);
+            session.putResolved(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                    dependency.getType(), dependency.getClassifier(), repositories, artifact);
         }
-        return org.eclipse.core.runtime.Path.fromOSString(file.getAbsolutePath());
     }
 
-    private boolean setContainerClasspathEeaPath(final IClasspathDescriptor classpath,
-            final IMavenProjectFacade mavenProjectFacade, final String mavenPropertyName,
-            final Optional<String> startsWith) {
-        final String annotationPath = getSingleProjectWideAnnotationPath(mavenProjectFacade, mavenPropertyName);
-        if (annotationPath != null && !annotationPath.isEmpty()) {
-            setContainerClasspathExternalAnnotationsPath(classpath, annotationPath, startsWith);
-            return true;
-        } else {
-            return false;
+    /**
+     * The results of resolving the dependencies in one request, in their
+     * order, including those which could not be resolved.
+     */
+    private static List<ArtifactResult> resolveArtifacts(final IMavenExecutionContext context,
+            final MavenProject mavenProject, final List<Dependency> dependencies) throws CoreException {
+        final RepositorySystemSession repositorySession = context.getRepositorySession();
+        final List<ArtifactRequest> requests = new ArrayList<>();
+        for (final Dependency dependency : dependencies) {
+            requests.add(new ArtifactRequest(
+                    RepositoryUtils.toDependency(dependency, repositorySession.getArtifactTypeRegistry()).getArtifact(),
+                    mavenProject.getRemoteProjectRepositories(), null));
+        }
+        try {
+            return context.getComponentLookup().lookup(RepositorySystem.class).resolveArtifacts(repositorySession,
+                    requests);
+        } catch (final ArtifactResolutionException e) {
+            return e.getResults();
+        }
+    }
+
+    /**
+     * Resolve a dependency, unless it was already resolved in this
+     * configuration session, or it is cached for the workspace session.
+     */
+    private Artifact resolve(final ConfigurationSession session, final Dependency dependency,
+            final List<ArtifactRepository> repositories, final IProgressMonitor monitor) throws CoreException {
+        final Optional<Artifact> resolved = session.getResolved(dependency.getGroupId(), dependency.getArtifactId(),
+                dependency.getVersion(), dependency.getType(), dependency.getClassifier(), repositories);
+        final Metrics metrics = session.getMetrics();
+        if (resolved.isPresent()) {
+            metrics.increment(Metrics.RESOLVE_CACHE_HITS);
+            return resolved.get();
+        }
+        metrics.increment(Metrics.RESOLVE_CALLS);
+        final Artifact artifact;
+        final ResolveEvent event = new ResolveEvent();
+        event.begin();
+        try {
+            artifact = metrics.time(Metrics.RESOLVE, () -> maven.resolve(dependency.getGroupId(),
+                    dependency.getArtifactId(), dependency.getVersion(), dependency.getType(),
+                    dependency.getClassifier(), repositories, monitor));
+        } catch (final CoreException | RuntimeException e) {
+            commit(event, dependency, null, ResolveEvent.ERROR);
+            throw e;
+        }
+        commit(event, dependency, artifact, artifact != null && artifact.isResolved() ? ResolveEvent.RESOLVED
+                : ResolveEvent.UNRESOLVED);
+        session.putResolved(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion(),
+                dependency.getType(), dependency.getClassifier(), repositories, artifact);
+        return artifact;
+    }
+
+    private static void commit(final ResolveEvent event, final Dependency dependency, final Artifact artifact,
+            final String outcome) {
+        if (event.shouldCommit()) {
+            event.coordinates = dependency.getGroupId() + ":" + dependency.getArtifactId() + ":"
+                    + dependency.getVersion() + (dependency.getClassifier() == null ? "" : ":"
+                            + dependency.getClassifier());
+            final File file = artifact == null ? null : artifact.getFile();
+            if (file != null) {
+                event.path = file.getPath();
+                event.size = file.length();
+            }
+            event.outcome = outcome;
+            event.commit();
         }
     }
 
@@ -328,16 +609,47 @@ public class ClasspathConfigurator extends AbstractProjectConfigurator implement
         }
     }
 
-    private String getSingleProjectWideAnnotationPath(final IMavenProjectFacade mavenProjectFacade) {
-        return getSingleProjectWideAnnotationPath(mavenProjectFacade, M2E_JDT_ANNOTATIONPATH);
+    /**
+     * The catalog of *-eea artifacts of the local repository, if the project
+     * opted in with the m2e.eea.catalog property. Until the repository was
+     * scanned in the background for the first time, the catalog is empty,
+     * and the project is updated again once it was.
+     */
+    private Optional<EeaCatalog> getCatalog(final IMavenProjectFacade mavenProjectFacade) {
+        final Activator activator = Activator.getDefault();
+        if (activator == null || !Boolean.parseBoolean(getProjectProperty(mavenProjectFacade, M2E_EEA_CATALOG))) {
+            return Optional.empty();
+        }
+        final EeaCatalog catalog = activator.getEeaCatalog();
+        if (!catalog.isScanned()) {
+            activator.getIndexingJob().updateAfterCatalogScan(mavenProjectFacade.getProject());
+        }
+        return Optional.of(catalog);
     }
 
-    private String getSingleProjectWideAnnotationPath(final IMavenProjectFacade mavenProjectFacade,
+    private int getIntProperty(final IMavenProjectFacade mavenProjectFacade, final String propertyName,
+            final int defaultValue) {
+        final String property = getProjectProperty(mavenProjectFacade, propertyName);
+        if (property == null || property.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(property);
+        } catch (final NumberFormatException e) {
+            LOGGER.warn("Ignoring {}, not a number: {}", propertyName, property);
+            return defaultValue;
+        }
+    }
+
+    private String getProjectProperty(final IMavenProjectFacade mavenProjectFacade,
             final String propertyName) {
         if (mavenProjectFacade == null) {
             return null;
         }
-        final MavenProject mavenProject = mavenProjectFacade.getMavenProject();
+        return getProjectProperty(mavenProjectFacade.getMavenProject(), propertyName);
+    }
+
+    private String getProjectProperty(final MavenProject mavenProject, final String propertyName) {
         if (mavenProject == null) {
             return null;
         }
@@ -369,110 +681,270 @@ public class ClasspathConfigurator extends AbstractProjectConfigurator implement
     @Override
     public void configure(final ProjectConfigurationRequest projectConfigurationRequest, final IProgressMonitor monitor)
             throws CoreException {
-        final MavenProject mavenProject = projectConfigurationRequest.mavenProject();
+        try (ConfigurationSession session = ConfigurationSession.open()) {
+            Tracing.time(session.getMetrics(), "configure",
+                    projectConfigurationRequest.mavenProjectFacade().getProject().getName(),
+                    () -> configureCompilerOptions(session, projectConfigurationRequest.mavenProjectFacade(),
+                            projectConfigurationRequest.mavenProject(), monitor));
+        }
+    }
+
+    /**
+     * Set the compiler options of the maven-compiler-plugin dependencies, or
+     * of its compilerArguments properties file, before returning, so that the
+     * build which M2E starts after configuring the project already uses them.
+     */
+    private void configureCompilerOptions(final ConfigurationSession session,
+            final IMavenProjectFacade mavenProjectFacade, final MavenProject mavenProject,
+            final IProgressMonitor monitor) throws CoreException {
+        final CompilerOptionsWriter.Batch compilerOptions = new CompilerOptionsWriter.Batch();
+        addCompilerOptions(session, compilerOptions, mavenProjectFacade, mavenProject, monitor);
+        if (compilerOptions.isEmpty()) {
+            return;
+        }
+        final int written = session.getMetrics().time(Metrics.WRITE_OPTIONS,
+                () -> compilerOptions.write(ResourcesPlugin.getWorkspace(), monitor));
+        if (written == 0) {
+            LOGGER.debug("Compiler options of {} are up to date", mavenProjectFacade.getProject().getName());
+        }
+    }
+
+    private void addCompilerOptions(final ConfigurationSession session, final CompilerOptionsWriter.Batch batch,
+            final IMavenProjectFacade mavenProjectFacade, final MavenProject mavenProject,
+            final IProgressMonitor monitor) throws CoreException {
         final Plugin plugin = mavenProject.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
         if (plugin == null) {
             return;
         }
-        for (final Dependency dependency : plugin.getDependencies()) {
-            if ("tycho-compiler-jdt".equals(dependency.getArtifactId())) {
-                // Just an optimization to save the unneeded resolve() below
-                continue;
-            }
-            final Artifact artifact = maven.resolve(dependency.getGroupId(), dependency.getArtifactId(),
-                    dependency.getVersion(), dependency.getType(), dependency.getClassifier(),
-                    mavenProject.getRemoteArtifactRepositories(), monitor);
-            if (artifact != null && artifact.isResolved()) {
-                final Optional<String> optionalPropertiesAsText = read(artifact.getFile(),
-                        "org.eclipse.jdt.core.prefs");
-                optionalPropertiesAsText.ifPresent(propertiesAsText -> {
-                    final Properties configurationCompilerArgumentsProperties = new Properties();
-                    try {
-                        configurationCompilerArgumentsProperties.load(new StringReader(propertiesAsText));
-                        configureProjectFromProperties(projectConfigurationRequest.mavenProjectFacade().getProject(),
-                                configurationCompilerArgumentsProperties);
-                        return;
-                    } catch (final IOException e) {
-                        LOGGER.error("IOException while reading properties: {}", propertiesAsText, e);
-                    }
-                });
-            }
+        warmResolutionCache(session, mavenProjectFacade, mavenProject, monitor);
+        final ExternalAnnotationsEngine engine = newEngine(session);
+        final List<Dependency> dependencies = getCompilerPluginDependencies(mavenProject);
+        final ArtifactResolver<Dependency, CoreException> resolver = newResolver(session, mavenProject, monitor);
+        final Optional<PrecomputedManifest.Module> module = getPrecomputed(mavenProject);
+        Optional<List<Map<String, String>>> precomputed = Optional.empty();
+        if (module.isPresent()) {
+            precomputed = module.get().getCompilerOptions(hashDependencies(session, dependencies, resolver));
+            session.getMetrics().increment(precomputed.isPresent() ? Metrics.MANIFEST_HITS : Metrics.MANIFEST_MISSES);
+        }
+        final List<Map<String, String>> dependenciesOptions = precomputed.isPresent() ? precomputed.get()
+                : engine.getCompilerOptions(dependencies, resolver);
+        if (!dependenciesOptions.isEmpty()) {
+            dependenciesOptions.forEach(options -> batch.add(mavenProjectFacade.getProject(), options));
+            return;
         }
 
         // If we reach here then we haven't been able to use a suitable dependency of maven-compiler-plugin,
         // so we fall back to trying to use the properties file given in the plugin's configuration:
         //
-        if (!(plugin.getConfiguration() instanceof Xpp3Dom)) {
+        final String configurationCompilerArgumentsPropertiesPath = getCompilerArgumentsPropertiesPath(plugin);
+        if (configurationCompilerArgumentsPropertiesPath == null) {
             return;
         }
+        engine.getCompilerArgumentsOptions(new File(configurationCompilerArgumentsPropertiesPath))
+                .ifPresent(options -> batch.add(mavenProjectFacade.getProject(), options));
+    }
+
+    private String getCompilerArgumentsPropertiesPath(final Plugin plugin) {
+        if (!(plugin.getConfiguration() instanceof Xpp3Dom)) {
+            return null;
+        }
         final Xpp3Dom configurationDom = (Xpp3Dom) plugin.getConfiguration();
         if (configurationDom == null) {
-            return;
+            return null;
         }
         final Xpp3Dom compilerArgumentsDom = configurationDom.getChild("compilerArguments");
         if (compilerArgumentsDom == null) {
-            return;
+            return null;
         }
         final Xpp3Dom propertiesDom = compilerArgumentsDom.getChild("properties");
         if (propertiesDom == null) {
+            return null;
+        }
+        return propertiesDom.getValue();
+    }
+
+    /**
+     * Apply POM changes which concern this configurator, without a full
+     * project configuration: when the annotation path properties or the *-eea
+     * dependencies changed, update the annotationpath of the affected
+     * classpath containers in place; when the dependencies or the
+     * compilerArguments properties of the maven-compiler-plugin changed, apply
+     * the compiler options again. The Maven Dependencies container itself is
+     * refreshed by M2E when dependencies change, which runs
+     * {@link #configureClasspath(IMavenProjectFacade, IClasspathDescriptor, IProgressMonitor)}.
+     */
+    @Override
+    public void mavenProjectChanged(final MavenProjectChangedEvent event, final IProgressMonitor monitor)
+            throws CoreException {
+        final IMavenProjectFacade mavenProjectFacade = event.getMavenProject();
+        final IMavenProjectFacade oldMavenProjectFacade = event.getOldMavenProject();
+        if (mavenProjectFacade == null || oldMavenProjectFacade == null) {
+            // Added projects are configured in full by M2E, and removed ones need nothing
             return;
         }
-        final String configurationCompilerArgumentsPropertiesPath = propertiesDom.getValue();
-        if (configurationCompilerArgumentsPropertiesPath == null) {
+        final MavenProject oldMavenProject = oldMavenProjectFacade.getMavenProject();
+        final MavenProject mavenProject = mavenProjectFacade.getMavenProject(monitor);
+        if (oldMavenProject == null || mavenProject == null) {
             return;
         }
 
-        final File configurationCompilerArgumentsFile = new File(configurationCompilerArgumentsPropertiesPath);
-        if (!configurationCompilerArgumentsFile.exists()) {
+        final boolean containersChanged = !getAnnotationPathProperties(oldMavenProject)
+                .equals(getAnnotationPathProperties(mavenProject))
+                || !toCoordinates(getEeaDependencies(oldMavenProject))
+                        .equals(toCoordinates(getEeaDependencies(mavenProject)));
+        final boolean compilerOptionsChanged = !toCoordinates(getCompilerPluginDependencies(oldMavenProject))
+                .equals(toCoordinates(getCompilerPluginDependencies(mavenProject)))
+                || !Objects.equals(getCompilerArgumentsPropertiesPath(oldMavenProject),
+                        getCompilerArgumentsPropertiesPath(mavenProject));
+        if (!containersChanged && !compilerOptionsChanged) {
             return;
         }
-        if (configurationCompilerArgumentsFile.getPath().replace('\\', '/').contains("/.settings/")) {
+
+        final IJavaProject javaProject = JavaCore.create(mavenProjectFacade.getProject());
+        if (javaProject == null || !javaProject.exists()) {
             return;
         }
+        try (ConfigurationSession session = ConfigurationSession.open()) {
+            Tracing.time(session.getMetrics(), "mavenProjectChanged", mavenProjectFacade.getProject().getName(), () -> {
+                if (containersChanged) {
+                    updateContainerAnnotationPaths(session, javaProject, mavenProjectFacade, oldMavenProject,
+                            mavenProject, monitor);
+                }
+                if (compilerOptionsChanged) {
+                    configureCompilerOptions(session, mavenProjectFacade, mavenProject, monitor);
+                }
+            });
+        } catch (final CancellationException e) {
+            throw new OperationCanceledException(e.getMessage());
+        }
+    }
 
-        try (FileInputStream inputStream = new FileInputStream(configurationCompilerArgumentsFile)) {
-            final Properties configurationCompilerArgumentsProperties = new Properties();
-            configurationCompilerArgumentsProperties.load(inputStream);
-            configureProjectFromProperties(projectConfigurationRequest.mavenProjectFacade().getProject(),
-                    configurationCompilerArgumentsProperties);
-            return;
-        } catch (final IOException e) {
-            LOGGER.error("IOException while reading file: {}", configurationCompilerArgumentsFile, e);
+    /**
+     * Set the annotationpath of the raw classpath's containers to what it
+     * should be for the new Maven project, and remove it from those which the
+     * old one configured but the new one no longer does. Other containers, and
+     * any other attributes, are left alone. What the old one configured is
+     * told from its properties and *-eea dependencies as they are, so that
+     * nothing is resolved or merged for a project which is gone.
+     */
+    private void updateContainerAnnotationPaths(final ConfigurationSession session, final IJavaProject javaProject,
+            final IMavenProjectFacade mavenProjectFacade, final MavenProject oldMavenProject,
+            final MavenProject mavenProject, final IProgressMonitor monitor) throws CoreException {
+        final List<ContainerAnnotationPath> newAnnotationPaths = getContainerAnnotationPaths(session,
+                mavenProjectFacade, mavenProject, monitor);
+
+        final IClasspathEntry[] rawClasspath = javaProject.getRawClasspath();
+        boolean changed = false;
+        for (int i = 0; i < rawClasspath.length; i++) {
+            final IClasspathEntry entry = rawClasspath[i];
+            if (entry.getEntryKind() != IClasspathEntry.CPE_CONTAINER) {
+                continue;
+            }
+            final String current = getClasspathAttribute(entry, ANNOTATIONPATH_ATTRIBUTE);
+            final String wanted = getAnnotationPath(newAnnotationPaths, entry.getPath());
+            if (wanted != null && !wanted.equals(current)
+                    || wanted == null && current != null && configures(oldMavenProject, entry.getPath())) {
+                rawClasspath[i] = withClasspathAttribute(entry, ANNOTATIONPATH_ATTRIBUTE, wanted);
+                LOGGER.info("Changing External Annotations of {} from {} to {}", entry.getPath(), current, wanted);
+                changed = true;
+            }
+        }
+        if (changed) {
+            javaProject.setRawClasspath(rawClasspath, monitor);
         }
     }
 
-    private void configureProjectFromProperties(final IProject project,
-            final Properties configurationCompilerArgumentsProperties) {
-        if (configurationCompilerArgumentsProperties.isEmpty()) {
-            return;
+    /**
+     * Whether {@link #getContainerAnnotationPaths} may set the annotationpath
+     * of a container for a Maven project, decided by the same precedence of
+     * properties over *-eea dependencies, but without resolving anything.
+     */
+    private boolean configures(final MavenProject mavenProject, final IPath containerPath) {
+        if (hasProperty(mavenProject, M2E_JDT_ANNOTATIONPATH)) {
+            return true;
         }
-        final IJavaProject javaProject = JavaCore.create(project);
-        if (javaProject == null) {
-            return;
+        final Map<String, String> containerProperties = new LinkedHashMap<>();
+        containerProperties.put(M2E_EEA_ANNOTATIONPATH_JRE, JRE_CONTAINER);
+        containerProperties.put(M2E_EEA_ANNOTATIONPATH_MVN, MAVEN_CLASSPATH_CONTAINER);
+        containerProperties.put(M2E_EEA_ANNOTATIONPATH_PDE, PDE_REQUIRED_PLUGINS);
+        boolean anyContainerProperty = false;
+        for (final Map.Entry<String, String> property : containerProperties.entrySet()) {
+            if (hasProperty(mavenProject, property.getKey())) {
+                anyContainerProperty = true;
+                if (containerPath.toString().startsWith(property.getValue())) {
+                    return true;
+                }
+            }
         }
-        Map<String, String> options = javaProject.getOptions(false);
-        options.putAll(fromProperties(configurationCompilerArgumentsProperties));
-        javaProject.setOptions(options);
+        return !anyContainerProperty && containerPath.toString().startsWith(JRE_CONTAINER)
+                && !getEeaDependencies(mavenProject).isEmpty();
     }
 
-    @SuppressWarnings({ "unchecked", "rawtypes" })
-    private Map<String, String> fromProperties(final Properties properties) {
-        final Map configurationCompilerArgumentsPropertiesAsMap = properties;
-        final Map<String, String> map = new HashMap<String, String>(configurationCompilerArgumentsPropertiesAsMap);
-        return map;
+    private boolean hasProperty(final MavenProject mavenProject, final String propertyName) {
+        final String property = getProjectProperty(mavenProject, propertyName);
+        return property != null && !property.isEmpty();
     }
 
-    @Override
-    public void mavenProjectChanged(final MavenProjectChangedEvent event, final IProgressMonitor monitor)
-            throws CoreException {
-        final String newAnnotationpath = getSingleProjectWideAnnotationPath(event.getMavenProject());
-        final String oldAnnotationpath = getSingleProjectWideAnnotationPath(event.getOldMavenProject());
-        if (newAnnotationpath == oldAnnotationpath
-                || newAnnotationpath != null && newAnnotationpath.equals(oldAnnotationpath)) {
-            return;
+    private String getAnnotationPath(final List<ContainerAnnotationPath> containerAnnotationPaths,
+            final IPath containerPath) {
+        String annotationPath = null;
+        for (final ContainerAnnotationPath containerAnnotationPath : containerAnnotationPaths) {
+            if (!containerAnnotationPath.startsWith.isPresent()
+                    || containerPath.toString().startsWith(containerAnnotationPath.startsWith.get())) {
+                annotationPath = containerAnnotationPath.annotationPath;
+            }
+        }
+        return annotationPath;
+    }
+
+    private String getClasspathAttribute(final IClasspathEntry entry, final String name) {
+        for (final IClasspathAttribute attribute : entry.getExtraAttributes()) {
+            if (name.equals(attribute.getName())) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copy a container entry, with an attribute set to a new value, or removed if value is null.
+     */
+    private IClasspathEntry withClasspathAttribute(final IClasspathEntry entry, final String name,
+            final String value) {
+        final List<IClasspathAttribute> attributes = new ArrayList<>();
+        for (final IClasspathAttribute attribute : entry.getExtraAttributes()) {
+            if (!name.equals(attribute.getName())) {
+                attributes.add(attribute);
+            }
+        }
+        if (value != null) {
+            attributes.add(JavaCore.newClasspathAttribute(name, value));
+        }
+        return JavaCore.newContainerEntry(entry.getPath(), entry.getAccessRules(),
+                attributes.toArray(new IClasspathAttribute[attributes.size()]), entry.isExported());
+    }
+
+    private Map<String, String> getAnnotationPathProperties(final MavenProject mavenProject) {
+        final Map<String, String> annotationPathProperties = new TreeMap<>();
+        final Properties properties = mavenProject.getProperties();
+        if (properties != null) {
+            for (final String name : properties.stringPropertyNames()) {
+                if (name.equals(M2E_JDT_ANNOTATIONPATH) || name.startsWith(M2E_EEA_ANNOTATIONPATH_PREFIX)) {
+                    annotationPathProperties.put(name, properties.getProperty(name).trim());
+                }
+            }
         }
+        return annotationPathProperties;
+    }
+
+    private String getCompilerArgumentsPropertiesPath(final MavenProject mavenProject) {
+        final Plugin plugin = mavenProject.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        return plugin == null ? null : getCompilerArgumentsPropertiesPath(plugin);
+    }
 
-        // TODO : warn the user that the config should be updated in full
+    private List<String> toCoordinates(final List<Dependency> dependencies) {
+        return dependencies.stream().map(d -> d.getGroupId() + ':' + d.getArtifactId() + ':' + d.getVersion() + ':'
+                + d.getType() + ':' + d.getClassifier()).collect(Collectors.toList());
     }
 
     private String toString(final IClasspathEntryDescriptor entry) {
@@ -487,4 +959,62 @@ public class ClasspathConfigurator extends AbstractProjectConfigurator implement
         return sb.toString();
     }
 
+    /**
+     * The annotationpath for containers whose path starts with a prefix, or for all containers.
+     */
+    private static final class ContainerAnnotationPath {
+        final String annotationPath;
+        final Optional<String> startsWith;
+
+        ContainerAnnotationPath(final String annotationPath, final Optional<String> startsWith) {
+            this.annotationPath = annotationPath;
+            this.startsWith = startsWith;
+        }
+    }
+
+    /**
+     * An M2E classpath entry, for the engine.
+     */
+    private final class ClasspathEntryAdapter implements ClasspathEntry {
+        private final IClasspathEntryDescriptor cpEntry;
+        private final ArtifactKey artifactKey;
+        private String annotationPath;
+
+        ClasspathEntryAdapter(final IClasspathEntryDescriptor cpEntry) {
+            this.cpEntry = cpEntry;
+            this.artifactKey = cpEntry.getArtifactKey();
+        }
+
+        @Override
+        public String getPath() {
+            return cpEntry.getPath().toString();
+        }
+
+        @Override
+        public String getGroupId() {
+            return artifactKey == null ? null : artifactKey.groupId();
+        }
+
+        @Override
+        public String getArtifactId() {
+            return artifactKey == null ? null : artifactKey.artifactId();
+        }
+
+        @Override
+        public String getVersion() {
+            return artifactKey == null ? null : artifactKey.version();
+        }
+
+        @Override
+        public String getClassifier() {
+            return artifactKey == null ? null : artifactKey.classifier();
+        }
+
+        @Override
+        public void setAnnotationPath(final String annotationPath) {
+            this.annotationPath = annotationPath;
+            setExternalAnnotationsPath(cpEntry, annotationPath);
+        }
+    }
+
 }
@@ -0,0 +1,136 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes JDT compiler options of a project only if they actually change.
+ *
+ * <p>
+ * {@link IJavaProject#setOptions(Map)} saves the project preferences and fires
+ * an options change event, which makes JDT do a full build of the project, even
+ * if all values are the same as before. This compares the project specific
+ * options with the new ones first, and leaves the project alone if there is no
+ * difference.
+ *
+ * <p>
+ * A {@link Batch} collects the options of one or many projects, from any
+ * number of sources, and writes all of them in one workspace operation, so
+ * that each project is written once, and the resulting builds are triggered
+ * once at the end instead of after each project. Whoever fills a batch writes
+ * it before returning, so that no build runs with options still queued.
+ */
+public final class CompilerOptionsWriter {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(CompilerOptionsWriter.class);
+
+    private CompilerOptionsWriter() {
+    }
+
+    /**
+     * The options which would change if the given ones were applied on top of
+     * the current ones.
+     *
+     * @return the changed keys, with their new values
+     */
+    public static Map<String, String> getChangedOptions(final Map<String, String> currentOptions,
+            final Map<String, String> newOptions) {
+        Map<String, String> changedOptions = Collections.emptyMap();
+        for (final Map.Entry<String, String> option : newOptions.entrySet()) {
+            if (!Objects.equals(currentOptions.get(option.getKey()), option.getValue())) {
+                if (changedOptions.isEmpty()) {
+                    changedOptions = new LinkedHashMap<>();
+                }
+                changedOptions.put(option.getKey(), option.getValue());
+            }
+        }
+        return changedOptions;
+    }
+
+    /**
+     * Add options to the project specific options of a project, if that changes anything.
+     *
+     * @return the keys which changed, empty if the options were not written
+     */
+    public static Set<String> write(final IProject project, final Map<String, String> newOptions) {
+        final IJavaProject javaProject = JavaCore.create(project);
+        if (javaProject == null || newOptions.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Map<String, String> options = javaProject.getOptions(false);
+        final Map<String, String> changedOptions = getChangedOptions(options, newOptions);
+        if (changedOptions.isEmpty()) {
+            LOGGER.debug("Compiler options of {} are up to date", project.getName());
+            return Collections.emptySet();
+        }
+        options.putAll(changedOptions);
+        javaProject.setOptions(options);
+        final Set<String> changedKeys = new TreeSet<>(changedOptions.keySet());
+        LOGGER.info("Changed compiler options {} of {}", changedKeys, project.getName());
+        return changedKeys;
+    }
+
+    /**
+     * Compiler options of several projects, to be written together.
+     */
+    public static final class Batch {
+        private final Map<IProject, Map<String, String>> options = new LinkedHashMap<>();
+
+        /**
+         * Queue options to be written for a project, on top of any already queued.
+         */
+        public synchronized void add(final IProject project, final Map<String, String> newOptions) {
+            if (!newOptions.isEmpty()) {
+                options.computeIfAbsent(project, p -> new LinkedHashMap<>()).putAll(newOptions);
+            }
+        }
+
+        public synchronized boolean isEmpty() {
+            return options.isEmpty();
+        }
+
+        /**
+         * Write and forget all queued options, in one workspace operation which
+         * defers resource change notifications (and thus builds) to its end.
+         *
+         * @return the number of projects whose options changed
+         */
+        public int write(final IWorkspace workspace, final IProgressMonitor monitor) throws CoreException {
+            final Map<IProject, Map<String, String>> queued;
+            synchronized (this) {
+                if (options.isEmpty()) {
+                    return 0;
+                }
+                queued = new LinkedHashMap<>(options);
+                options.clear();
+            }
+            final int[] changedProjects = new int[1];
+            workspace.run(m -> {
+                final SubMonitor subMonitor = SubMonitor.convert(m, "Writing compiler options", queued.size());
+                for (final Map.Entry<IProject, Map<String, String>> entry : queued.entrySet()) {
+                    subMonitor.split(1);
+                    if (entry.getKey().isAccessible() && !CompilerOptionsWriter.write(entry.getKey(),
+                            entry.getValue()).isEmpty()) {
+                        changedProjects[0]++;
+                    }
+                }
+            }, null, IWorkspace.AVOID_UPDATE, monitor);
+            return changedProjects[0];
+        }
+    }
+
+}
@@ -0,0 +1,266 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.lastnpe.m2e.core.Activator;
+import org.lastnpe.m2e.core.Tracing;
+import org.lastnpe.m2e.engine.CompilerPreferencesCache;
+import org.lastnpe.m2e.engine.MarkerCache;
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.lastnpe.m2e.engine.Metrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches shared by all projects configured in one M2E update.
+ *
+ * <p>
+ * When M2E updates many projects, it calls the configurator once per project,
+ * and the same dependency JARs are probed for their eea-for-gav marker, and
+ * the same *-eea artifacts are resolved, again and again. A session lives as
+ * long as there are configurator calls in flight, plus a short grace period
+ * to bridge the gap between two projects of the same batch, and is then
+ * thrown away, so that nothing from one update leaks into the next. The
+ * exception are resolved artifacts of fixed versions, which are delegated to
+ * the {@link ArtifactResolutionCache} of the workspace session, and parsed
+ * compiler preferences, see {@link CompilerPreferencesCache}.
+ *
+ * <p>
+ * Use as <code>try (ConfigurationSession session = ConfigurationSession.open()) { ... }</code>.
+ * All caches are safe for concurrent use.
+ */
+public final class ConfigurationSession implements AutoCloseable, MarkerCache {
+
+    private static final long GRACE_PERIOD_MS = 3000;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ConfigurationSession.class);
+
+    private static ConfigurationSession current;
+    private static int openCount;
+
+    private final Map<File, Marker> markers = new ConcurrentHashMap<>();
+    private final Map<List<String>, Artifact> artifacts = new ConcurrentHashMap<>();
+    private final Map<List<File>, Optional<File>> mergedArchives = new ConcurrentHashMap<>();
+    private final Set<String> warmedProjects = ConcurrentHashMap.newKeySet();
+    private final Metrics metrics = new Metrics();
+    private final Optional<ArtifactResolutionCache> resolutionCache;
+    private final CompilerPreferencesCache compilerPreferences;
+    private final MarkerCache workspaceMarkers;
+    private final Job discardJob = new DiscardJob(this);
+
+    private ConfigurationSession(final Optional<ArtifactResolutionCache> resolutionCache,
+            final CompilerPreferencesCache compilerPreferences, final MarkerCache workspaceMarkers) {
+        this.resolutionCache = resolutionCache;
+        this.compilerPreferences = compilerPreferences;
+        this.workspaceMarkers = workspaceMarkers;
+    }
+
+    /**
+     * Join the current session, or start a new one if there is none.
+     */
+    public static ConfigurationSession open() {
+        final Activator activator = Activator.getDefault();
+        final ConfigurationSession session;
+        final boolean started;
+        synchronized (ConfigurationSession.class) {
+            started = current == null;
+            if (started) {
+                current = activator == null
+                        ? new ConfigurationSession(Optional.empty(), new CompilerPreferencesCache(), MarkerCache.NONE)
+                        : new ConfigurationSession(Optional.of(activator.getResolutionCache()),
+                                activator.getCompilerPreferencesCache(), activator.getWorkspaceMarkerCache());
+                LOGGER.debug("Started configuration session {}", current);
+            } else {
+                current.discardJob.cancel();
+            }
+            openCount++;
+            session = current;
+        }
+        // not while holding the lock, which every configurator call needs
+        if (started && activator != null) {
+            // to hear of installed artifacts from now on, see ArtifactResolutionCache
+            activator.getIndexingJob();
+        }
+        return session;
+    }
+
+    /**
+     * Leave the session. Once the last one left, and nobody joined again
+     * within the grace period, the session is discarded.
+     */
+    @Override
+    public void close() {
+        synchronized (ConfigurationSession.class) {
+            if (--openCount == 0) {
+                discardJob.schedule(GRACE_PERIOD_MS);
+            }
+        }
+    }
+
+    /**
+     * Discard the current session right away instead of after the grace
+     * period, e.g. at shutdown, unless a configurator call is in flight.
+     */
+    public static void discardNow() {
+        final ConfigurationSession session;
+        synchronized (ConfigurationSession.class) {
+            session = current;
+        }
+        if (session != null) {
+            session.discardJob.cancel();
+            session.discard();
+        }
+    }
+
+    /**
+     * End this session, if it is still current and nobody is in it.
+     *
+     * @return whether it was ended
+     */
+    private boolean discard() {
+        synchronized (ConfigurationSession.class) {
+            if (current != this || openCount > 0) {
+                return false;
+            }
+            current = null;
+        }
+        LOGGER.debug("Discarded configuration session {} with {} markers and {} artifacts", this, markers.size(),
+                artifacts.size());
+        Tracing.sessionEnded(this, metrics);
+        return true;
+    }
+
+    /**
+     * The GAVs of the eea-for-gav marker of a JAR or directory. A JAR is only
+     * probed the first time it is asked for in this session, or if its length
+     * or time stamp changed since, because a session can outlive an update of
+     * the local repository if its grace period keeps being renewed. A
+     * directory is passed on to the {@link WorkspaceMarkerCache}, which drops
+     * its marker as soon as the workspace says it changed.
+     */
+    @Override
+    public List<MavenGAV> getMarker(final File fileOrDirectory, final Function<File, List<MavenGAV>> probe) {
+        if (fileOrDirectory.isDirectory()) {
+            return workspaceMarkers.getMarker(fileOrDirectory, probe);
+        }
+        final long length = fileOrDirectory.length();
+        final long lastModified = fileOrDirectory.lastModified();
+        final Marker cached = markers.get(fileOrDirectory);
+        if (cached != null && cached.length == length && cached.lastModified == lastModified) {
+            return cached.gavs;
+        }
+        final List<MavenGAV> probed = workspaceMarkers.getMarker(fileOrDirectory, probe);
+        markers.put(fileOrDirectory, new Marker(probed, length, lastModified));
+        return probed;
+    }
+
+    /**
+     * A resolved artifact, if it was already resolved (from the same
+     * repositories) by another project of this session, or, for fixed
+     * versions, earlier in this workspace session.
+     */
+    public Optional<Artifact> getResolved(final String groupId, final String artifactId, final String version,
+            final String type, final String classifier, final List<ArtifactRepository> repositories) {
+        if (resolutionCache.isPresent() && ArtifactResolutionCache.isCacheable(version)) {
+            return resolutionCache.get().get(groupId, artifactId, version, type, classifier, repositories);
+        }
+        return Optional.ofNullable(artifacts
+                .get(ArtifactResolutionCache.key(groupId, artifactId, version, type, classifier, repositories)));
+    }
+
+    public void putResolved(final String groupId, final String artifactId, final String version, final String type,
+            final String classifier, final List<ArtifactRepository> repositories, final Artifact artifact) {
+        if (artifact == null || !artifact.isResolved()) {
+            return;
+        }
+        if (resolutionCache.isPresent() && ArtifactResolutionCache.isCacheable(version)) {
+            resolutionCache.get().put(groupId, artifactId, version, type, classifier, repositories, artifact);
+        } else {
+            artifacts.put(ArtifactResolutionCache.key(groupId, artifactId, version, type, classifier, repositories),
+                    artifact);
+        }
+    }
+
+    /**
+     * The archive merged from some EEA archives or directories, merging them
+     * (or checking that an earlier merge is still up to date) only the first
+     * time it is asked for in this session.
+     */
+    public Optional<File> getMergedArchive(final List<File> inputs,
+            final Function<List<File>, Optional<File>> merge) {
+        return mergedArchives.computeIfAbsent(inputs, merge);
+    }
+
+    /**
+     * Parsed compiler preferences, of the workspace session if running in
+     * Eclipse, else of this session.
+     */
+    public CompilerPreferencesCache getCompilerPreferences() {
+        return compilerPreferences;
+    }
+
+    /**
+     * What was done in this session, and how long it took.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Whether this is the first time in this session that the given project
+     * asks to have its dependencies resolved up front.
+     */
+    public boolean startWarmingResolutionCache(final String projectName) {
+        return warmedProjects.add(projectName);
+    }
+
+    private static final class Marker {
+        final List<MavenGAV> gavs;
+        final long length;
+        final long lastModified;
+
+        Marker(final List<MavenGAV> gavs, final long length, final long lastModified) {
+            this.gavs = gavs;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class DiscardJob extends Job {
+        private final ConfigurationSession session;
+
+        DiscardJob(final ConfigurationSession session) {
+            super("Discard External Annotations configuration session");
+            this.session = session;
+            setSystem(true);
+        }
+
+        /**
+         * Also saves the eea-for-gav index with what the session probed, and
+         * starts indexing the whole workspace, the first time, now that it no
+         * longer competes with the configuration of the projects.
+         */
+        @Override
+        protected IStatus run(final IProgressMonitor monitor) {
+            final Activator activator = Activator.getDefault();
+            if (session.discard() && activator != null) {
+                activator.saveMarkerIndex();
+                activator.startIndexing();
+            }
+            return Status.OK_STATUS;
+        }
+    }
+
+}
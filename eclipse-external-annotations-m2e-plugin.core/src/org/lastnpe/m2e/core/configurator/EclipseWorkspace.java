@@ -0,0 +1,83 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.IPath;
+import org.lastnpe.m2e.core.Activator;
+import org.lastnpe.m2e.engine.Workspace;
+
+/**
+ * The Eclipse workspace, for the engine.
+ */
+public class EclipseWorkspace implements Workspace {
+
+    @Override
+    public Optional<File> getLocation(final String path) {
+        return toFile(new org.eclipse.core.runtime.Path(path));
+    }
+
+    public Optional<File> toFile(final IPath iPath) {
+        // iPath.toFile() is NOT what we want..
+        // https://wiki.eclipse.org/FAQ_What_is_the_difference_between_a_path_and_a_location%3F
+        final IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        final IResource resource = root.findMember(iPath);
+        if (resource != null) {
+            final IPath location = resource.getLocation();
+            return Optional.ofNullable(location.toFile());
+        } else {
+            // In this case iPath likely was an absolute FS / non-WS path to being with (or a closed project), so try:
+            return Optional.ofNullable(iPath.toFile());
+        }
+    }
+
+    @Override
+    public String getAnnotationPath(final File location) {
+        return getProjectPathFromAbsoluteLocationIfPossible(location).toString();
+    }
+
+    /**
+     * Attempt to convert an absolute File to a workspace relative project path.
+     *
+     * @param file a File pointing either to a JAR file in the Maven repo, or a project on disk
+     * @return IPath which will either be workspace relative if match found, else same location (absolute)
+     */
+    public IPath getProjectPathFromAbsoluteLocationIfPossible(File file) {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            final Optional<IProject> project = activator.getProjectLocationIndex().getProject(file);
+            if (project.isPresent()) {
+                return project.get().getFullPath();
+            }
+        }
+        final Path targetClassesPath = Paths.get("target", "classes");
+        if (file.toPath().endsWith(targetClassesPath)) {
+            file = file.getParentFile().getParentFile();
+        }
+        if (activator != null) {
+            // the index covers all open projects, so there is no need to search them again
+            return org.eclipse.core.runtime.Path.fromOSString(file.getAbsolutePath());
+        }
+        final URI fileURI = file.toURI().normalize();
+        final IProject[] projects = ResourcesPlugin.getWorkspace().getRoot().getProjects();
+        for (final IProject project : projects) {
+            if (!project.isOpen()) {
+                continue;
+            }
+            final URI locationURI = project.getLocationURI().normalize();
+            // The follow circus is because of a trailing slash difference:
+            if (Paths.get(locationURI).equals(Paths.get(fileURI))) {
+                return project.getFullPath();
+            }
+        }
+        return org.eclipse.core.runtime.Path.fromOSString(file.getAbsolutePath());
+    }
+
+}
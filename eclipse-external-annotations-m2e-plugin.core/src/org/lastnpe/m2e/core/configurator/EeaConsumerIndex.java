@@ -0,0 +1,253 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.m2e.core.MavenPlugin;
+import org.eclipse.m2e.core.embedder.ArtifactKey;
+import org.eclipse.m2e.core.embedder.ILocalRepositoryListener;
+import org.eclipse.m2e.core.project.MavenUpdateRequest;
+import org.lastnpe.m2e.engine.EeaFiles;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reverse index from each EEA source, i.e. the workspace project or JAR
+ * whose eea-for-gav marker may claim dependencies, to the projects which
+ * have it on their classpath, so that a changed marker only reconfigures
+ * the projects it can affect, instead of requiring an update of all Maven
+ * projects.
+ *
+ * <p>
+ * Sources are recorded per consumer each time its classpath is configured:
+ * the workspace projects on its classpath which have a marker, and every
+ * classpath entry which ended up as the annotation path of another one, so
+ * that the many projects without a marker cost nothing. A project which only
+ * gains a marker later is therefore not known as a source yet; its consumers
+ * have to be updated once by hand. When the eea-for-gav marker of a source
+ * project is changed or removed, or a source JAR is installed into the local
+ * repository again, the consumers of that source are queued, and updated
+ * together in one {@link MavenUpdateRequest} shortly afterwards. Sources are keyed by their
+ * {@link IPath}, and installed JARs are converted to one the same way as
+ * M2E's classpath entries, so that both agree on separators and on relative
+ * paths.
+ */
+public class EeaConsumerIndex implements IResourceChangeListener, ILocalRepositoryListener {
+
+    private static final long DELAY_MS = 1000;
+    private static final IPath MARKER = new Path(EeaFiles.EEA_FOR_GAV_FILENAME);
+    private static final IPath OUTPUT_MARKER = new Path("target/classes").append(MARKER);
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaConsumerIndex.class);
+
+    private final IWorkspace workspace;
+    private final Map<String, Set<IProject>> consumersBySource = new ConcurrentHashMap<>();
+    private final Map<IProject, Set<String>> sourcesByConsumer = new ConcurrentHashMap<>();
+    private final UpdateJob updateJob = new UpdateJob();
+
+    public EeaConsumerIndex(final IWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    public void start() {
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+    }
+
+    public void stop() {
+        workspace.removeResourceChangeListener(this);
+        updateJob.cancel();
+        consumersBySource.clear();
+        sourcesByConsumer.clear();
+    }
+
+    /**
+     * Record which EEA sources a project's classpath uses, replacing what was
+     * recorded for it before.
+     *
+     * @param sources workspace paths of projects (e.g. "/my-eea") or file system paths of JARs
+     */
+    public void setSources(final IProject consumer, final Collection<IPath> sources) {
+        final Set<String> keys = new LinkedHashSet<>();
+        sources.forEach(source -> keys.add(source.toString()));
+        final Set<String> newSources = Collections.unmodifiableSet(keys);
+        final Set<String> oldSources = sourcesByConsumer.put(consumer, newSources);
+        if (oldSources != null) {
+            oldSources.stream().filter(s -> !newSources.contains(s)).forEach(s -> removeConsumer(s, consumer));
+        }
+        newSources.forEach(
+                s -> consumersBySource.computeIfAbsent(s, k -> ConcurrentHashMap.newKeySet()).add(consumer));
+    }
+
+    /**
+     * The projects which use the given EEA source.
+     */
+    public Set<IProject> getConsumers(final IPath source) {
+        final Set<IProject> consumers = consumersBySource.get(source.toString());
+        return consumers == null ? Collections.emptySet() : Collections.unmodifiableSet(consumers);
+    }
+
+    /**
+     * The projects which use the given JAR as EEA source.
+     */
+    public Set<IProject> getConsumers(final File jar) {
+        return getConsumers(toPath(jar));
+    }
+
+    /**
+     * The path of a file, as M2E puts it on the classpath.
+     */
+    static IPath toPath(final File file) {
+        return Path.fromOSString(file.getAbsolutePath());
+    }
+
+    /**
+     * Update the configuration of the given projects shortly, together with
+     * any others queued by then.
+     */
+    public void update(final Collection<IProject> projects) {
+        updateJob.add(projects);
+    }
+
+    @Override
+    public void resourceChanged(final IResourceChangeEvent event) {
+        final IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        final Set<IProject> toUpdate = new LinkedHashSet<>();
+        for (final IResourceDelta projectDelta : delta.getAffectedChildren()) {
+            final IResource resource = projectDelta.getResource();
+            if (resource.getType() != IResource.PROJECT) {
+                continue;
+            }
+            final IProject project = (IProject) resource;
+            if (projectDelta.getKind() == IResourceDelta.REMOVED) {
+                forget(project);
+            }
+            final Set<IProject> consumers = getConsumers(project.getFullPath());
+            if (!consumers.isEmpty() && hasMarkerChange(projectDelta)) {
+                LOGGER.debug("{} of {} changed, reconfiguring {}", EeaFiles.EEA_FOR_GAV_FILENAME, project.getName(),
+                        consumers);
+                toUpdate.addAll(consumers);
+            }
+        }
+        updateJob.add(toUpdate);
+    }
+
+    @Override
+    public void artifactInstalled(final File repositoryBasedir, final ArtifactKey baseArtifact,
+            final ArtifactKey artifact, final File artifactFile) {
+        if (artifactFile != null) {
+            final Set<IProject> consumers = getConsumers(artifactFile);
+            if (!consumers.isEmpty()) {
+                LOGGER.debug("{} was installed, reconfiguring {}", artifactFile, consumers);
+                updateJob.add(consumers);
+            }
+        }
+    }
+
+    /**
+     * Whether the eea-for-gav marker of a project was added, removed or
+     * changed, where the configurator reads it: in the project directory, or
+     * in its output directory if that is on a classpath instead. Looks up
+     * just those two paths in the delta, instead of walking all of it.
+     */
+    static boolean hasMarkerChange(final IResourceDelta projectDelta) {
+        return isMarkerChange(projectDelta.findMember(MARKER))
+                || isMarkerChange(projectDelta.findMember(OUTPUT_MARKER));
+    }
+
+    private static boolean isMarkerChange(final IResourceDelta markerDelta) {
+        return markerDelta != null && (markerDelta.getKind() != IResourceDelta.CHANGED
+                || (markerDelta.getFlags() & (IResourceDelta.CONTENT | IResourceDelta.REPLACED)) != 0);
+    }
+
+    /**
+     * Whether the workspace project at the given path has an eea-for-gav
+     * marker, as far as the workspace knows, without reading it.
+     */
+    static boolean hasMarker(final IWorkspace workspace, final IPath projectPath) {
+        return workspace.getRoot().findMember(projectPath.append(MARKER)) != null;
+    }
+
+    private void forget(final IProject consumer) {
+        final Set<String> sources = sourcesByConsumer.remove(consumer);
+        if (sources != null) {
+            sources.forEach(s -> removeConsumer(s, consumer));
+        }
+    }
+
+    private void removeConsumer(final String source, final IProject consumer) {
+        consumersBySource.computeIfPresent(source, (s, consumers) -> {
+            consumers.remove(consumer);
+            return consumers.isEmpty() ? null : consumers;
+        });
+    }
+
+    /**
+     * Updates the queued projects in one batch.
+     */
+    private static final class UpdateJob extends Job {
+        private final Set<IProject> queued = new LinkedHashSet<>();
+
+        UpdateJob() {
+            super("Updating projects using changed External Annotations");
+            setPriority(BUILD);
+        }
+
+        void add(final Collection<IProject> projects) {
+            if (projects.isEmpty()) {
+                return;
+            }
+            synchronized (queued) {
+                queued.addAll(projects);
+            }
+            schedule(DELAY_MS);
+        }
+
+        @Override
+        protected IStatus run(final IProgressMonitor monitor) {
+            final Set<IProject> projects = new LinkedHashSet<>();
+            synchronized (queued) {
+                for (final IProject project : queued) {
+                    if (project.isAccessible()) {
+                        projects.add(project);
+                    }
+                }
+                queued.clear();
+            }
+            if (projects.isEmpty()) {
+                return Status.OK_STATUS;
+            }
+            LOGGER.info("Updating Maven project configuration of {} projects using changed External Annotations",
+                    projects.size());
+            final Map<String, IStatus> results = MavenPlugin.getProjectConfigurationManager()
+                    .updateProjectConfiguration(new MavenUpdateRequest(projects, false, false), true, false, false,
+                            monitor);
+            results.forEach((project, status) -> {
+                if (!status.isOK()) {
+                    LOGGER.warn("Could not update {}: {}", project, status.getMessage());
+                }
+            });
+            return Status.OK_STATUS;
+        }
+    }
+
+}
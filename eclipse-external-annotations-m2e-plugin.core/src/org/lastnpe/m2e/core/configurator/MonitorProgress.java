@@ -0,0 +1,36 @@
+package org.lastnpe.m2e.core.configurator;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.lastnpe.m2e.engine.DiscoveryProgress;
+
+/**
+ * Discovery progress on an Eclipse progress monitor, one tick per artifact.
+ * Synchronized, because SubMonitor is not thread safe, and entries may be
+ * probed in parallel.
+ */
+final class MonitorProgress implements DiscoveryProgress {
+
+    private final SubMonitor subMonitor;
+
+    MonitorProgress(final IProgressMonitor monitor, final String taskName) {
+        this.subMonitor = SubMonitor.convert(monitor, taskName, 1);
+    }
+
+    @Override
+    public synchronized void begin(final int artifacts) {
+        subMonitor.setWorkRemaining(artifacts);
+    }
+
+    @Override
+    public synchronized void worked(final String path) {
+        subMonitor.subTask(path);
+        subMonitor.worked(1);
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return subMonitor.isCanceled();
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.lastnpe.m2e.engine.PrecomputedManifest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parsed {@link PrecomputedManifest}s, for as long as Eclipse runs, so that
+ * all modules of a reactor share one, which is only read again when its
+ * length or time stamp changes, e.g. after a new one was generated.
+ */
+public class PrecomputedManifestCache {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(PrecomputedManifestCache.class);
+
+    private final Map<File, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * @return empty if the file does not exist, or cannot be used
+     */
+    public Optional<PrecomputedManifest> get(final File file) {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        final Entry entry = entries.get(file);
+        if (entry != null && entry.length == length && entry.lastModified == lastModified) {
+            return entry.manifest;
+        }
+        final Optional<PrecomputedManifest> manifest = read(file);
+        entries.put(file, new Entry(manifest, length, lastModified));
+        return manifest;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    static Optional<PrecomputedManifest> read(final File file) {
+        try {
+            final Optional<PrecomputedManifest> manifest = PrecomputedManifest.read(file.toPath());
+            if (!manifest.isPresent() && file.isFile()) {
+                LOGGER.warn("Ignoring EEA manifest of another version than {}: {}", PrecomputedManifest.VERSION,
+                        file);
+            }
+            return manifest;
+        } catch (final IOException e) {
+            LOGGER.error("Ignoring unreadable EEA manifest: {}", file, e);
+            return Optional.empty();
+        }
+    }
+
+    private static final class Entry {
+        final Optional<PrecomputedManifest> manifest;
+        final long length;
+        final long lastModified;
+
+        Entry(final Optional<PrecomputedManifest> manifest, final long length, final long lastModified) {
+            this.manifest = manifest;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Index of the file system locations of all open workspace projects, and of
+ * their Java output folders, to the project.
+ *
+ * <p>
+ * This makes finding the workspace project of an EEA which Maven resolved to
+ * a directory an O(1) lookup, instead of comparing against the location of
+ * every project in the workspace. The index is kept up to date by listening
+ * to projects being opened, closed, created, moved or deleted, and to changes
+ * of their .classpath (which may move the output folder).
+ */
+public class ProjectLocationIndex implements IResourceChangeListener {
+
+    private static final String DOT_CLASSPATH = ".classpath";
+    private static final Path TARGET_CLASSES = Paths.get("target", "classes");
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ProjectLocationIndex.class);
+
+    private final IWorkspace workspace;
+    private final Map<Path, IProject> projectsByLocation = new ConcurrentHashMap<>();
+    private final Map<IProject, List<Path>> locationsByProject = new ConcurrentHashMap<>();
+
+    public ProjectLocationIndex(final IWorkspace workspace) {
+        this.workspace = workspace;
+    }
+
+    public void start() {
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+        for (final IProject project : workspace.getRoot().getProjects()) {
+            update(project);
+        }
+        LOGGER.debug("Indexed {} locations of {} projects", projectsByLocation.size(), locationsByProject.size());
+    }
+
+    public void stop() {
+        workspace.removeResourceChangeListener(this);
+        projectsByLocation.clear();
+        locationsByProject.clear();
+    }
+
+    /**
+     * Find the open project which is, or whose Java output folder is, at the given location.
+     */
+    public Optional<IProject> getProject(final File location) {
+        return Optional.ofNullable(projectsByLocation.get(normalize(location.toPath())));
+    }
+
+    @Override
+    public void resourceChanged(final IResourceChangeEvent event) {
+        final IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        for (final IResourceDelta projectDelta : delta.getAffectedChildren()) {
+            if (isRelevant(projectDelta)) {
+                update((IProject) projectDelta.getResource());
+            }
+        }
+    }
+
+    private boolean isRelevant(final IResourceDelta projectDelta) {
+        if (projectDelta.getResource().getType() != IResource.PROJECT) {
+            return false;
+        }
+        if (projectDelta.getKind() != IResourceDelta.CHANGED) {
+            return true;
+        }
+        if ((projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+            return true;
+        }
+        for (final IResourceDelta child : projectDelta.getAffectedChildren()) {
+            if (DOT_CLASSPATH.equals(child.getResource().getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void update(final IProject project) {
+        final List<Path> oldLocations = locationsByProject.remove(project);
+        if (oldLocations != null) {
+            oldLocations.forEach(location -> projectsByLocation.remove(location, project));
+        }
+        if (!project.isOpen()) {
+            return;
+        }
+        final List<Path> newLocations = getLocations(project);
+        newLocations.forEach(location -> projectsByLocation.put(location, project));
+        locationsByProject.put(project, newLocations);
+    }
+
+    private List<Path> getLocations(final IProject project) {
+        final IPath projectLocation = project.getLocation();
+        if (projectLocation == null) {
+            return Collections.emptyList();
+        }
+        final Path location = normalize(projectLocation.toFile().toPath());
+        final List<Path> locations = new ArrayList<>(3);
+        locations.add(location);
+        locations.add(location.resolve(TARGET_CLASSES));
+        try {
+            if (project.hasNature(JavaCore.NATURE_ID)) {
+                final IJavaProject javaProject = JavaCore.create(project);
+                final IPath outputLocation = javaProject.getOutputLocation();
+                if (outputLocation != null && outputLocation.segmentCount() > 1) {
+                    final Path output = normalize(
+                            projectLocation.append(outputLocation.removeFirstSegments(1)).toFile().toPath());
+                    if (!locations.contains(output)) {
+                        locations.add(output);
+                    }
+                }
+            }
+        } catch (final CoreException e) {
+            LOGGER.debug("Could not get Java output location of {}", project, e);
+        }
+        return locations;
+    }
+
+    private static Path normalize(final Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+}
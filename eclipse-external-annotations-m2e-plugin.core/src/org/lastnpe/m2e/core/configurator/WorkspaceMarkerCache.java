@@ -0,0 +1,142 @@
+package org.lastnpe.m2e.core.configurator;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.lastnpe.m2e.engine.MarkerCache;
+import org.lastnpe.m2e.engine.MavenGAV;
+
+/**
+ * Markers of workspace project directories (the project itself, or its
+ * output folder such as target/classes), for as long as Eclipse runs.
+ *
+ * <p>
+ * Whether a directory belongs to a workspace project is an in-memory lookup
+ * in the {@link ProjectLocationIndex}, and a cached marker is only dropped
+ * when a resource delta says that an eea-for-gav file of its project was
+ * added, changed or removed, or the project itself was closed, moved or
+ * deleted, or its .classpath changed. So a configuration does not stat or
+ * read anything in the workspace which did not change. Changes made outside
+ * of Eclipse are only seen once the workspace is refreshed, like everything
+ * else in it.
+ *
+ * <p>
+ * Everything else, i.e. JARs, is passed on to the probe, and from there to
+ * the persistent index, which recognizes changed JARs by their length and
+ * time stamp.
+ */
+public class WorkspaceMarkerCache implements MarkerCache, IResourceChangeListener {
+
+    private static final String DOT_CLASSPATH = ".classpath";
+
+    private final IWorkspace workspace;
+    private final ProjectLocationIndex projectLocations;
+    private final Map<File, Entry> markers = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger probing = new AtomicInteger();
+
+    public WorkspaceMarkerCache(final IWorkspace workspace, final ProjectLocationIndex projectLocations) {
+        this.workspace = workspace;
+        this.projectLocations = projectLocations;
+    }
+
+    public void start() {
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+    }
+
+    public void stop() {
+        workspace.removeResourceChangeListener(this);
+        markers.clear();
+    }
+
+    @Override
+    public List<MavenGAV> getMarker(final File fileOrDirectory, final Function<File, List<MavenGAV>> probe) {
+        final Optional<IProject> project = projectLocations.getProject(fileOrDirectory);
+        if (!project.isPresent()) {
+            return probe.apply(fileOrDirectory);
+        }
+        final Entry cached = markers.get(fileOrDirectory);
+        if (cached != null) {
+            return cached.gavs;
+        }
+        // don't cache what was probed while the project changed
+        probing.incrementAndGet();
+        try {
+            final long before = generation.get();
+            final List<MavenGAV> probed = probe.apply(fileOrDirectory);
+            if (generation.get() == before) {
+                markers.put(fileOrDirectory, new Entry(project.get(), probed));
+            }
+            return probed;
+        } finally {
+            probing.decrementAndGet();
+        }
+    }
+
+    public int size() {
+        return markers.size();
+    }
+
+    @Override
+    public void resourceChanged(final IResourceChangeEvent event) {
+        final IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        for (final IResourceDelta projectDelta : delta.getAffectedChildren()) {
+            if (projectDelta.getResource().getType() != IResource.PROJECT) {
+                continue;
+            }
+            final IProject project = (IProject) projectDelta.getResource();
+            // only look into the deltas of projects which can have (or are just getting) a cached marker
+            if ((probing.get() > 0 || isCached(project)) && isRelevant(projectDelta)) {
+                invalidate(project);
+            }
+        }
+    }
+
+    private static boolean isRelevant(final IResourceDelta projectDelta) {
+        if (projectDelta.getKind() != IResourceDelta.CHANGED
+                || (projectDelta.getFlags() & (IResourceDelta.OPEN | IResourceDelta.DESCRIPTION)) != 0) {
+            return true;
+        }
+        for (final IResourceDelta child : projectDelta.getAffectedChildren()) {
+            if (DOT_CLASSPATH.equals(child.getResource().getName())) {
+                return true;
+            }
+        }
+        return EeaConsumerIndex.hasMarkerChange(projectDelta);
+    }
+
+    private boolean isCached(final IProject project) {
+        return markers.values().stream().anyMatch(entry -> entry.project.equals(project));
+    }
+
+    private void invalidate(final IProject project) {
+        generation.incrementAndGet();
+        markers.values().removeIf(entry -> entry.project.equals(project));
+    }
+
+    private static final class Entry {
+        final IProject project;
+        final List<MavenGAV> gavs;
+
+        Entry(final IProject project, final List<MavenGAV> gavs) {
+            this.project = project;
+            this.gavs = gavs;
+        }
+    }
+
+}
@@ -0,0 +1,100 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EeaArchiveMergerTest {
+
+    private static final String STRING_EEA = "java/lang/String.eea";
+    private static final String LIST_EEA = "java/util/List.eea";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void firstInputWins() throws IOException {
+        final File first = directory("first", STRING_EEA, "class java/lang/String\n");
+        final File second = archive("second.jar", STRING_EEA, "class java/lang/String\n# ignored\n");
+        final File third = archive("third.jar", LIST_EEA, "class java/util/List\n");
+
+        final File merged = newMerger().merge(Arrays.asList(first, second, third));
+        try (ZipFile zip = new ZipFile(merged)) {
+            assertEquals(2, zip.size());
+            assertEquals("class java/lang/String\n", read(zip, STRING_EEA));
+            assertEquals("class java/util/List\n", read(zip, LIST_EEA));
+        }
+    }
+
+    @Test
+    public void sameContentIsSharedWhereverItComesFrom() throws IOException {
+        final File directory = directory("eea", STRING_EEA, "class java/lang/String\n");
+        final File archive = archive("eea.jar", STRING_EEA, "class java/lang/String\n");
+
+        final File merged = newMerger().merge(Collections.singletonList(directory));
+        // a new merger, as after a restart
+        assertEquals(merged, newMerger().merge(Collections.singletonList(archive)));
+    }
+
+    @Test
+    public void changedContentGetsNewArchiveAndKeepsOld() throws IOException {
+        final File directory = directory("eea", STRING_EEA, "class java/lang/String\n");
+        final EeaArchiveMerger merger = newMerger();
+        final File merged = merger.merge(Collections.singletonList(directory));
+        assertEquals(merged, merger.merge(Collections.singletonList(directory)));
+
+        final File eea = new File(directory, STRING_EEA);
+        Files.write(eea.toPath(), "class java/lang/String\nlength\n ()I\n ()I\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(eea.setLastModified(eea.lastModified() + 2000));
+        final File changed = merger.merge(Collections.singletonList(directory));
+
+        assertNotEquals(merged, changed);
+        // a project which was not updated yet may still point to it
+        assertTrue(merged.isFile());
+        assertEquals(2, new File(folder.getRoot(), "merged").list().length);
+    }
+
+    private EeaArchiveMerger newMerger() {
+        return new EeaArchiveMerger(new File(folder.getRoot(), "merged"));
+    }
+
+    private File directory(final String name, final String entry, final String content) throws IOException {
+        final File directory = folder.newFolder(name);
+        final File eea = new File(directory, entry);
+        Files.createDirectories(eea.getParentFile().toPath());
+        Files.write(eea.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return directory;
+    }
+
+    private File archive(final String name, final String entry, final String content) throws IOException {
+        final File archive = folder.newFile(name);
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(archive.toPath()))) {
+            out.putNextEntry(new ZipEntry(entry));
+            out.write(content.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+        return archive;
+    }
+
+    private static String read(final ZipFile zip, final String entry) throws IOException {
+        try (InputStream in = zip.getInputStream(zip.getEntry(entry))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
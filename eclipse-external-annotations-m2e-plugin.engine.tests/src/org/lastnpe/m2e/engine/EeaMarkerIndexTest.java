@@ -0,0 +1,177 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class EeaMarkerIndexTest {
+
+    private static final List<MavenGAV> GAVS = Arrays.asList(MavenGAV.of("org.example", "library"),
+            MavenGAV.of("org.example", "other", "1.0", "sources"));
+
+    /** "EEAI", as the header of every version of the index file. */
+    private static final int MAGIC = 0x45454149;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File indexFile;
+    private File markedJar;
+    private File plainJar;
+    private File directory;
+
+    @Before
+    public void createArtifacts() throws IOException {
+        indexFile = new File(folder.getRoot(), "index.bin");
+        markedJar = artifact("library-eea.jar", 100);
+        plainJar = artifact("library.jar", 200);
+        directory = folder.newFolder("classes");
+        Files.write(new File(directory, EeaFiles.EEA_FOR_GAV_FILENAME).toPath(),
+                "org.example:library\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void loadsWhatItSaved() {
+        final EeaMarkerIndex index = newIndex();
+        index.put(markedJar, GAVS);
+        index.put(plainJar, Collections.emptyList());
+        index.put(directory, GAVS.subList(0, 1));
+        index.save();
+
+        final EeaMarkerIndex loaded = newIndex();
+        loaded.load();
+        assertEquals(2, loaded.size());
+        assertEquals(1, loaded.negativeSize());
+        assertEquals(Optional.of(GAVS), loaded.get(markedJar));
+        assertEquals(Optional.of(Collections.emptyList()), loaded.get(plainJar));
+        assertEquals(Optional.of(GAVS.subList(0, 1)), loaded.get(directory));
+    }
+
+    @Test
+    public void changedArtifactsAreNotFound() throws IOException {
+        final EeaMarkerIndex index = newIndex();
+        index.put(markedJar, GAVS);
+        index.put(plainJar, Collections.emptyList());
+        index.put(directory, GAVS.subList(0, 1));
+        index.save();
+
+        assertTrue(markedJar.setLastModified(markedJar.lastModified() + 2000));
+        Files.write(plainJar.toPath(), new byte[201]);
+        Files.write(new File(directory, EeaFiles.EEA_FOR_GAV_FILENAME).toPath(),
+                "org.example:library\norg.example:other\n".getBytes(StandardCharsets.UTF_8));
+
+        final EeaMarkerIndex loaded = newIndex();
+        loaded.load();
+        assertEquals(Optional.empty(), loaded.get(markedJar));
+        assertEquals(Optional.empty(), loaded.get(plainJar));
+        assertEquals(Optional.empty(), loaded.get(directory));
+    }
+
+    @Test
+    public void ignoresIndexOfOtherVersion() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(indexFile.toPath()))) {
+            out.writeInt(MAGIC);
+            out.writeInt(1);
+            // version 1 had no negative filter, but stored JARs without a marker as entries
+            out.writeInt(1);
+            out.writeUTF(plainJar.getCanonicalPath());
+            out.writeLong(plainJar.length());
+            out.writeLong(plainJar.lastModified());
+            out.writeInt(0);
+        }
+        final EeaMarkerIndex index = newIndex();
+        index.load();
+        assertEquals(0, index.size());
+        assertEquals(0, index.negativeSize());
+        assertEquals(Optional.empty(), index.get(plainJar));
+
+        // and replaces it with the current version once something was recorded
+        index.put(plainJar, Collections.emptyList());
+        index.save();
+        final EeaMarkerIndex loaded = newIndex();
+        loaded.load();
+        assertEquals(Optional.of(Collections.emptyList()), loaded.get(plainJar));
+    }
+
+    @Test
+    public void ignoresTruncatedIndex() throws IOException {
+        final EeaMarkerIndex index = newIndex();
+        index.put(markedJar, GAVS);
+        index.put(directory, GAVS);
+        index.save();
+        final byte[] bytes = Files.readAllBytes(indexFile.toPath());
+        Files.write(indexFile.toPath(), Arrays.copyOf(bytes, bytes.length - 10));
+
+        final EeaMarkerIndex loaded = newIndex();
+        loaded.load();
+        assertEquals(0, loaded.size());
+        assertEquals(Optional.empty(), loaded.get(markedJar));
+    }
+
+    @Test
+    public void savesOnlyIfChanged() {
+        final EeaMarkerIndex index = newIndex();
+        index.save();
+        assertFalse(indexFile.exists());
+
+        index.put(markedJar, GAVS);
+        index.save();
+        assertTrue(indexFile.delete());
+        index.save();
+        assertFalse(indexFile.exists());
+    }
+
+    @Test
+    public void savesAgainWhatChangedSinceLastSave() {
+        final EeaMarkerIndex index = newIndex();
+        index.put(markedJar, GAVS);
+        index.save();
+        index.put(plainJar, Collections.emptyList());
+        index.save();
+
+        final EeaMarkerIndex loaded = newIndex();
+        loaded.load();
+        assertEquals(Optional.of(GAVS), loaded.get(markedJar));
+        assertEquals(Optional.of(Collections.emptyList()), loaded.get(plainJar));
+    }
+
+    @Test
+    public void clearDeletesIndexFile() {
+        final EeaMarkerIndex index = newIndex();
+        index.put(markedJar, GAVS);
+        index.put(plainJar, Collections.emptyList());
+        index.save();
+
+        index.clear();
+        assertFalse(indexFile.exists());
+        assertEquals(0, index.size());
+        assertEquals(0, index.negativeSize());
+        assertEquals(Optional.empty(), index.get(markedJar));
+    }
+
+    private EeaMarkerIndex newIndex() {
+        return new EeaMarkerIndex(indexFile, EeaFiles.EEA_FOR_GAV_FILENAME);
+    }
+
+    private File artifact(final String name, final int length) throws IOException {
+        final File file = folder.newFile(name);
+        Files.write(file.toPath(), new byte[length]);
+        return file;
+    }
+
+}
@@ -0,0 +1,125 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Test;
+
+public class MavenGAVTest {
+
+    private static final String[] LINES = { "org.example:library", "org.example:library:1.0",
+            "org.example:library:1.0:sources", "org.example:library:1.0:sources:ignored:too",
+            "  org.example:library:1.0  ", "\torg.example:library\r", ":library", "org.example::1.0",
+            "org.example:library:", "org.example:library::", "org.example:library::sources", "::library",
+            "org.example:libr\u00e4ry:1.0", "org.example", "org.example:", ":", "::", "", "   ", "a:b:c:d:e:f:g" };
+
+    @Test
+    public void parsesLikeSplittingAtColons() {
+        for (final String line : LINES) {
+            assertParsesLikeSplit(line);
+        }
+    }
+
+    @Test
+    public void parsesRandomLinesLikeSplittingAtColons() {
+        final char[] alphabet = { 'a', 'b', ':', ':', ' ', '\t', '.', '-', '\u00e9' };
+        final Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            final char[] line = new char[random.nextInt(10)];
+            for (int c = 0; c < line.length; c++) {
+                line[c] = alphabet[random.nextInt(alphabet.length)];
+            }
+            assertParsesLikeSplit(new String(line));
+        }
+    }
+
+    @Test
+    public void parsedPartsAreOptional() {
+        final MavenGAV gav = MavenGAV.parse("org.example:library");
+        assertEquals("org.example", gav.getGroupId());
+        assertEquals("library", gav.getArtifactId());
+        assertEquals(Optional.empty(), gav.getVersion());
+        assertEquals(Optional.empty(), gav.getClassifier());
+        assertEquals("org.example:library", gav.toString());
+
+        final MavenGAV full = MavenGAV.parse("org.example:library:1.0:sources");
+        assertEquals(Optional.of("1.0"), full.getVersion());
+        assertEquals(Optional.of("sources"), full.getClassifier());
+        assertEquals("org.example:library:1.0:sources", full.toString());
+    }
+
+    @Test
+    public void rejectsLinesWithoutArtifactId() {
+        assertThrows(IllegalArgumentException.class, () -> MavenGAV.parse("org.example"));
+        assertThrows(IllegalArgumentException.class, () -> MavenGAV.parse("org.example::"));
+        assertThrows(IllegalArgumentException.class, () -> MavenGAV.parse(" "));
+        assertThrows(IllegalArgumentException.class, () -> parseBytes("org.example:"));
+    }
+
+    @Test
+    public void instancesAreCanonical() {
+        assertSame(MavenGAV.parse("org.example:library:1.0"), MavenGAV.of("org.example", "library", "1.0"));
+        assertSame(MavenGAV.parse(" org.example:library "), parseBytes("org.example:library"));
+        assertSame(MavenGAV.of("org.example", "library", "1.0", "sources"),
+                MavenGAV.parse("org.example:library:1.0:sources"));
+    }
+
+    @Test
+    public void matchesOnlyWhatItHas() {
+        final MavenGAV gav = MavenGAV.parse("org.example:library");
+        assertTrue(gav.matches("org.example", "library", "1.0", null));
+        assertTrue(gav.matches("org.example", "library", "2.0", "sources"));
+        assertFalse(gav.matches("org.example", "other", "1.0", null));
+
+        final MavenGAV versioned = MavenGAV.parse("org.example:library:1.0");
+        assertTrue(versioned.matches("org.example", "library", "1.0", "sources"));
+        assertFalse(versioned.matches("org.example", "library", "2.0", null));
+    }
+
+    /**
+     * Both parse methods give what the former split based parser gave, or fail like it.
+     */
+    private static void assertParsesLikeSplit(final String line) {
+        final Optional<MavenGAV> expected = parseBySplitting(line);
+        assertEquals(line, expected, parse(() -> MavenGAV.parse(line)));
+        assertEquals(line, expected, parse(() -> parseBytes(line)));
+    }
+
+    private static Optional<MavenGAV> parse(final Supplier<MavenGAV> parser) {
+        try {
+            return Optional.of(parser.get());
+        } catch (final IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static MavenGAV parseBytes(final String line) {
+        final byte[] bytes = ("#\n" + line + "\n").getBytes(StandardCharsets.UTF_8);
+        return MavenGAV.parse(bytes, 2, bytes.length - 1);
+    }
+
+    /**
+     * The parser MavenGAV had before it parsed in a single pass.
+     */
+    private static Optional<MavenGAV> parseBySplitting(final String line) {
+        final String[] parts = line.trim().split(":");
+        if (parts.length < 2) {
+            return Optional.empty();
+        } else if (parts.length == 2) {
+            return Optional.of(MavenGAV.of(parts[0], parts[1]));
+        } else if (parts.length == 3) {
+            return Optional.of(MavenGAV.of(parts[0], parts[1], parts[2]));
+        } else {
+            return Optional.of(MavenGAV.of(parts[0], parts[1], parts[2], parts[3]));
+        }
+    }
+
+}
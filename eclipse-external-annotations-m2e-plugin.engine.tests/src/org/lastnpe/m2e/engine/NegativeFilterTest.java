@@ -0,0 +1,153 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class NegativeFilterTest {
+
+    private static final int CAPACITY = 100;
+
+    @Test
+    public void keepsAtMostTwiceTheCapacity() {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        for (long fingerprint = 1; fingerprint <= 10 * CAPACITY; fingerprint++) {
+            filter.add(fingerprint);
+            assertTrue(filter.size() <= 2 * CAPACITY);
+        }
+        // the last CAPACITY fingerprints are in the current table, the CAPACITY before in the previous one
+        for (long fingerprint = 9 * CAPACITY + 1; fingerprint <= 10 * CAPACITY; fingerprint++) {
+            assertTrue(filter.contains(fingerprint));
+        }
+        for (long fingerprint = 1; fingerprint <= 8 * CAPACITY; fingerprint++) {
+            assertFalse(filter.contains(fingerprint));
+        }
+        assertEquals(2 * CAPACITY, filter.size());
+    }
+
+    @Test
+    public void fingerprintsInUseSurviveRotation() {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        final long inUse = Long.MAX_VALUE;
+        filter.add(inUse);
+        for (long fingerprint = 1; fingerprint <= 10 * CAPACITY; fingerprint++) {
+            filter.add(fingerprint);
+            if (fingerprint % (CAPACITY / 2) == 0) {
+                assertTrue(filter.contains(inUse));
+            }
+        }
+        assertTrue(filter.contains(inUse));
+    }
+
+    @Test
+    public void addingTwiceCountsOnce() {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        for (int i = 0; i < 10 * CAPACITY; i++) {
+            filter.add(42);
+        }
+        assertEquals(1, filter.size());
+    }
+
+    @Test
+    public void collidingSlotsAreProbed() {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        // same low bits, so all start probing at the same slot of the table
+        for (long i = 1; i <= CAPACITY; i++) {
+            filter.add(i << 32);
+        }
+        for (long i = 1; i <= CAPACITY; i++) {
+            assertTrue(filter.contains(i << 32));
+        }
+        assertFalse(filter.contains((CAPACITY + 1L) << 32));
+    }
+
+    @Test
+    public void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new NegativeFilter(0));
+        assertThrows(IllegalArgumentException.class, () -> new NegativeFilter(-1));
+        assertThrows(IllegalArgumentException.class, () -> new NegativeFilter(1).add(0));
+        new NegativeFilter(1).add(1);
+    }
+
+    @Test
+    public void fingerprintDependsOnPathLengthAndTime() {
+        final long fingerprint = NegativeFilter.fingerprint("/repository/library.jar", 1000, 1_600_000_000_000L);
+        assertEquals(fingerprint, NegativeFilter.fingerprint("/repository/library.jar", 1000, 1_600_000_000_000L));
+        assertNotEquals(fingerprint, NegativeFilter.fingerprint("/repository/library2.jar", 1000, 1_600_000_000_000L));
+        assertNotEquals(fingerprint, NegativeFilter.fingerprint("/repository/library.jar", 1001, 1_600_000_000_000L));
+        assertNotEquals(fingerprint, NegativeFilter.fingerprint("/repository/library.jar", 1000, 1_600_000_000_001L));
+        assertNotEquals(0, NegativeFilter.fingerprint("", 0, 0));
+    }
+
+    @Test
+    public void clearForgetsEverything() {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        for (long fingerprint = 1; fingerprint <= 3 * CAPACITY / 2; fingerprint++) {
+            filter.add(fingerprint);
+        }
+        filter.clear();
+        assertEquals(0, filter.size());
+        assertFalse(filter.contains(1));
+        assertFalse(filter.contains(3 * CAPACITY / 2));
+    }
+
+    @Test
+    public void readsWhatItWrote() throws IOException {
+        final NegativeFilter filter = new NegativeFilter(CAPACITY);
+        for (long fingerprint = 1; fingerprint <= 3 * CAPACITY / 2; fingerprint++) {
+            filter.add(fingerprint);
+        }
+        final NegativeFilter read = new NegativeFilter(CAPACITY);
+        read.readFrom(new DataInputStream(new ByteArrayInputStream(write(filter))));
+
+        // compared without contains, which moves what it finds in the previous table to the current one
+        assertEquals(filter.size(), read.size());
+        assertEquals(fingerprints(filter), fingerprints(read));
+        assertEquals(3 * CAPACITY / 2, fingerprints(read).size());
+        assertTrue(read.contains(1));
+        assertTrue(read.contains(3 * CAPACITY / 2));
+        assertFalse(read.contains(3 * CAPACITY / 2 + 1));
+    }
+
+    @Test
+    public void readingIntoSmallerFilterStaysBounded() throws IOException {
+        final NegativeFilter filter = new NegativeFilter(10 * CAPACITY);
+        for (long fingerprint = 1; fingerprint <= 10 * CAPACITY; fingerprint++) {
+            filter.add(fingerprint);
+        }
+        final NegativeFilter read = new NegativeFilter(CAPACITY);
+        read.readFrom(new DataInputStream(new ByteArrayInputStream(write(filter))));
+
+        assertEquals(2 * CAPACITY, read.size());
+    }
+
+    private static Set<Long> fingerprints(final NegativeFilter filter) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(write(filter)));
+        final Set<Long> fingerprints = new HashSet<>();
+        for (int i = in.readInt(); i > 0; i--) {
+            fingerprints.add(in.readLong());
+        }
+        return fingerprints;
+    }
+
+    private static byte[] write(final NegativeFilter filter) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            filter.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,70 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ParallelProbeTest {
+
+    private static final int ENTRIES = 50;
+    private static final int PARALLELISM = 3;
+
+    private final Set<String> threads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    /**
+     * Every entry claims the GAV named after it, and the marker of each is
+     * "read" slowly enough that the workers overlap.
+     */
+    private final ExternalAnnotationsEngine engine = new ExternalAnnotationsEngine(new Workspace() {
+        @Override
+        public Optional<File> getLocation(final String path) {
+            return Optional.of(new File(path));
+        }
+
+        @Override
+        public String getAnnotationPath(final File location) {
+            return location.getPath();
+        }
+    }, (fileOrDirectory, probe) -> {
+        threads.add(Thread.currentThread().getName());
+        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(2);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running.decrementAndGet();
+        return Collections.singletonList(MavenGAV.of("org.example", fileOrDirectory.getName()));
+    }, Optional.empty(), new CompilerPreferencesCache(), new Metrics());
+
+    @Test
+    public void probesEveryEntryWithAtMostParallelismThreads() {
+        final List<String> paths = new ArrayList<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            paths.add("/repository/library" + i);
+        }
+        // twice, on the same shared executor
+        for (int run = 0; run < 2; run++) {
+            final GavMatcher<String> mapping = engine.getExternalAnnotationMapping(paths, PARALLELISM);
+            for (int i = 0; i < ENTRIES; i++) {
+                assertEquals(Optional.of(paths.get(i)), mapping.match("org.example", "library" + i, "1.0", null));
+            }
+        }
+        assertTrue(maxRunning.get() <= PARALLELISM);
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("eea-for-gav probe ")));
+        ExternalAnnotationsEngine.shutdownProbeExecutor();
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PrecomputedManifestTest {
+
+    private static final String SHA1 = "0123456789abcdef0123456789abcdef01234567";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Metrics metrics = new Metrics();
+
+    /**
+     * An engine which fails on reading any marker.
+     */
+    private final ExternalAnnotationsEngine engine = new ExternalAnnotationsEngine(new FileWorkspace(),
+            (fileOrDirectory, probe) -> {
+                throw new AssertionError("Read the marker of " + fileOrDirectory);
+            }, Optional.empty(), new CompilerPreferencesCache(), metrics);
+
+    @Test
+    public void appliesManifestWithoutReadingMarkers() throws IOException {
+        // not even ZIP files, so that reading a marker would fail too
+        final File library = jar("library-1.0.jar", 100);
+        final File eea = jar("library-eea-1.0.jar", 10);
+        final PrecomputedManifest.Module module = new PrecomputedManifest.Module("org.example", "app",
+                engine.hashClasspath(classpath(library, eea)), "", "");
+        module.putEntryAnnotations("org.example:library:1.0", "org.example:library-eea:1.0");
+
+        final List<Entry> classpath = classpath(library, eea);
+        assertTrue(engine.applyPrecomputed(module, classpath));
+        assertEquals(eea.getPath(), classpath.get(0).annotationPath);
+        assertNull(classpath.get(1).annotationPath);
+        assertEquals(1, metrics.getCount(Metrics.MANIFEST_HITS));
+        assertEquals(0, metrics.getCount(Metrics.MARKER_CACHE_MISSES) + metrics.getCount(Metrics.MARKER_CACHE_HITS));
+    }
+
+    @Test
+    public void changedClasspathIsNotApplied() throws IOException {
+        final File library = jar("library-1.0.jar", 100);
+        final File eea = jar("library-eea-1.0.jar", 10);
+        final PrecomputedManifest.Module module = new PrecomputedManifest.Module("org.example", "app",
+                engine.hashClasspath(classpath(library, eea)), "", "");
+        module.putEntryAnnotations("org.example:library:1.0", "org.example:library-eea:1.0");
+
+        Files.write(eea.toPath(), new byte[11]);
+        final List<Entry> classpath = classpath(library, eea);
+        assertFalse(engine.applyPrecomputed(module, classpath));
+        assertNull(classpath.get(0).annotationPath);
+        assertEquals(1, metrics.getCount(Metrics.MANIFEST_MISSES));
+    }
+
+    @Test
+    public void jarIsKeyedByRepositoryChecksum() throws IOException {
+        final File jar = jar("library-1.0.jar", 100);
+        final File checksum = new File(jar.getPath() + ".sha1");
+        Files.write(checksum.toPath(), (SHA1.toUpperCase() + "  library-1.0.jar\n").getBytes(StandardCharsets.UTF_8));
+        assertTrue(checksum.setLastModified(jar.lastModified() + 1000));
+
+        final String key = PrecomputedManifest.inputKey("org.example:library:1.0", Optional.of(jar));
+        assertEquals("org.example:library:1.0|sha1:" + SHA1, key);
+
+        // the same content elsewhere, e.g. on CI, has the same key
+        final File copy = folder.newFolder("ci").toPath().resolve(jar.getName()).toFile();
+        Files.copy(jar.toPath(), copy.toPath());
+        Files.copy(checksum.toPath(), new File(copy.getPath() + ".sha1").toPath());
+        assertEquals(key, PrecomputedManifest.inputKey("org.example:library:1.0", Optional.of(copy)));
+    }
+
+    @Test
+    public void jarWithoutChecksumIsKeyedByLength() throws IOException {
+        final File jar = jar("library-1.0-SNAPSHOT.jar", 100);
+        assertEquals("org.example:library:1.0-SNAPSHOT|100",
+                PrecomputedManifest.inputKey("org.example:library:1.0-SNAPSHOT", Optional.of(jar)));
+
+        final File invalid = new File(jar.getPath() + ".sha1");
+        Files.write(invalid.toPath(), "not a checksum".getBytes(StandardCharsets.UTF_8));
+        assertEquals("org.example:library:1.0-SNAPSHOT|100",
+                PrecomputedManifest.inputKey("org.example:library:1.0-SNAPSHOT", Optional.of(jar)));
+    }
+
+    @Test
+    public void checksumOlderThanJarIsIgnored() throws IOException {
+        final File jar = jar("library-1.0.jar", 100);
+        final File checksum = new File(jar.getPath() + ".sha1");
+        Files.write(checksum.toPath(), SHA1.getBytes(StandardCharsets.UTF_8));
+        // installed over the downloaded one
+        assertTrue(checksum.setLastModified(jar.lastModified() - 10_000));
+
+        assertEquals("org.example:library:1.0|100",
+                PrecomputedManifest.inputKey("org.example:library:1.0", Optional.of(jar)));
+    }
+
+    @Test
+    public void outputDirectoryIsKeyedByMarkerOfItsProject() throws IOException {
+        final File project = folder.newFolder("library-eea");
+        final File classes = new File(project, "target/classes");
+        assertTrue(classes.mkdirs());
+        final String coordinates = "org.example:library-eea:1.0-SNAPSHOT";
+        final String withoutMarker = PrecomputedManifest.inputKey(coordinates, Optional.of(classes));
+        assertEquals(coordinates + "|-", withoutMarker);
+
+        Files.write(new File(project, EeaFiles.EEA_FOR_GAV_FILENAME).toPath(),
+                "org.example:library\n".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(withoutMarker, PrecomputedManifest.inputKey(coordinates, Optional.of(classes)));
+    }
+
+    @Test
+    public void hashDependsOnOrder() {
+        assertNotEquals(PrecomputedManifest.hash(Arrays.asList("a", "b")),
+                PrecomputedManifest.hash(Arrays.asList("b", "a")));
+        assertEquals(PrecomputedManifest.hash(Collections.singletonList("a")),
+                PrecomputedManifest.hash(Collections.singletonList("a")));
+    }
+
+    @Test
+    public void readsWhatItWrote() throws IOException {
+        final PrecomputedManifest manifest = new PrecomputedManifest();
+        final PrecomputedManifest.Module module = new PrecomputedManifest.Module("org.example", "app", "c", "j", "o");
+        module.putEntryAnnotations("org.example:library:1.0", "org.example:library-eea:1.0");
+        module.setJreAnnotations("org.example:jdk-eea:1.0");
+        module.addCompilerOptions(Collections.singletonMap("org.eclipse.jdt.core.compiler.annotation.nullanalysis",
+                "enabled"));
+        manifest.putModule(module);
+        final File file = new File(folder.getRoot(), "eea-manifest.txt");
+        manifest.write(file.toPath());
+
+        final PrecomputedManifest.Module read = PrecomputedManifest.read(file.toPath()).get()
+                .getModule("org.example", "app").get();
+        assertEquals(Collections.singletonMap("org.example:library:1.0", "org.example:library-eea:1.0"),
+                read.getEntryAnnotations("c").get());
+        assertFalse(read.getEntryAnnotations("other").isPresent());
+        assertEquals(Optional.of(Optional.of("org.example:jdk-eea:1.0")), read.getJreAnnotations("j"));
+        final List<Map<String, String>> options = read.getCompilerOptions("o").get();
+        assertEquals("enabled", options.get(0).get("org.eclipse.jdt.core.compiler.annotation.nullanalysis"));
+    }
+
+    @Test
+    public void manifestOfOtherVersionIsIgnored() throws IOException {
+        final File file = new File(folder.getRoot(), "eea-manifest.txt");
+        Files.write(file.toPath(), "lastnpe-eea-manifest 2\nmodule\torg.example:app\tc\tj\to\n"
+                .getBytes(StandardCharsets.UTF_8));
+        assertFalse(PrecomputedManifest.read(file.toPath()).isPresent());
+    }
+
+    private File jar(final String name, final int length) throws IOException {
+        final File jar = folder.newFile(name);
+        Files.write(jar.toPath(), new byte[length]);
+        return jar;
+    }
+
+    private static List<Entry> classpath(final File library, final File eea) {
+        return Arrays.asList(new Entry(library, "library"), new Entry(eea, "library-eea"));
+    }
+
+    private static final class Entry implements ClasspathEntry {
+        final File file;
+        final String artifactId;
+        String annotationPath;
+
+        Entry(final File file, final String artifactId) {
+            this.file = file;
+            this.artifactId = artifactId;
+        }
+
+        @Override
+        public String getPath() {
+            return file.getPath();
+        }
+
+        @Override
+        public String getGroupId() {
+            return "org.example";
+        }
+
+        @Override
+        public String getArtifactId() {
+            return artifactId;
+        }
+
+        @Override
+        public String getVersion() {
+            return "1.0";
+        }
+
+        @Override
+        public String getClassifier() {
+            return null;
+        }
+
+        @Override
+        public void setAnnotationPath(final String annotationPath) {
+            this.annotationPath = annotationPath;
+        }
+    }
+
+    private static final class FileWorkspace implements Workspace {
+        @Override
+        public Optional<File> getLocation(final String path) {
+            return Optional.of(new File(path));
+        }
+
+        @Override
+        public String getAnnotationPath(final File location) {
+            return location.getPath();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+package org.lastnpe.m2e.engine;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipEntryProbeTest {
+
+    private static final byte[] MARKER = "org.example:library\n# comment\norg.example:other:1.0\n"
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsStoredEntry() throws IOException {
+        final File jar = writeJar(ZipEntry.STORED, null);
+        assertArrayEquals(MARKER, ZipEntryProbe.read(jar, EeaFiles.EEA_FOR_GAV_FILENAME).get());
+    }
+
+    @Test
+    public void readsDeflatedEntryWithDataDescriptor() throws IOException {
+        // ZipOutputStream writes the sizes of deflated entries in a data descriptor after the data
+        final File jar = writeJar(ZipEntry.DEFLATED, null);
+        assertArrayEquals(MARKER, ZipEntryProbe.read(jar, EeaFiles.EEA_FOR_GAV_FILENAME).get());
+    }
+
+    @Test
+    public void readsEntryOfArchiveWithComment() throws IOException {
+        final File jar = writeJar(ZipEntry.DEFLATED, "a comment, which follows the end of central directory");
+        assertArrayEquals(MARKER, ZipEntryProbe.read(jar, EeaFiles.EEA_FOR_GAV_FILENAME).get());
+    }
+
+    @Test
+    public void missingEntryIsEmpty() throws IOException {
+        final File jar = writeJar(ZipEntry.DEFLATED, null);
+        assertFalse(ZipEntryProbe.read(jar, "eea-for-ga").isPresent());
+        assertFalse(ZipEntryProbe.read(jar, "eea-for-gav2").isPresent());
+    }
+
+    @Test
+    public void readsZip64ArchiveWithZipFile() throws IOException {
+        final File jar = new File(folder.getRoot(), "zip64.jar");
+        final Map<String, String> env = new HashMap<>();
+        env.put("create", "true");
+        env.put("forceZIP64End", "true");
+        try (FileSystem zip = FileSystems.newFileSystem(URI.create("jar:" + jar.toURI()), env)) {
+            Files.createDirectories(zip.getPath("org/example"));
+            Files.write(zip.getPath("org/example/Library.class"), new byte[100]);
+            Files.write(zip.getPath(EeaFiles.EEA_FOR_GAV_FILENAME), MARKER);
+        }
+        assertArrayEquals(MARKER, ZipEntryProbe.read(jar, EeaFiles.EEA_FOR_GAV_FILENAME).get());
+        assertFalse(ZipEntryProbe.read(jar, "missing").isPresent());
+    }
+
+    @Test
+    public void readsArchiveWithPrependedDataWithZipFile() throws IOException {
+        final File jar = writeJar(ZipEntry.DEFLATED, null);
+        final File selfExtracting = new File(folder.getRoot(), "self-extracting.jar");
+        try (OutputStream out = Files.newOutputStream(selfExtracting.toPath())) {
+            out.write("#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.UTF_8));
+            out.write(Files.readAllBytes(jar.toPath()));
+        }
+        assertArrayEquals(MARKER, ZipEntryProbe.read(selfExtracting, EeaFiles.EEA_FOR_GAV_FILENAME).get());
+    }
+
+    @Test
+    public void rejectsWhatIsNotAZipFile() throws IOException {
+        final File tiny = folder.newFile("tiny.jar");
+        Files.write(tiny.toPath(), new byte[] { 'P', 'K' });
+        assertThrows(IOException.class, () -> ZipEntryProbe.read(tiny, EeaFiles.EEA_FOR_GAV_FILENAME));
+
+        final File text = folder.newFile("text.jar");
+        Files.write(text.toPath(), new byte[1000]);
+        assertThrows(IOException.class, () -> ZipEntryProbe.read(text, EeaFiles.EEA_FOR_GAV_FILENAME));
+    }
+
+    @Test
+    public void readsEmptyEntry() throws IOException {
+        final File jar = folder.newFile("empty-marker.jar");
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new ZipEntry(EeaFiles.EEA_FOR_GAV_FILENAME));
+            out.closeEntry();
+        }
+        final Optional<byte[]> marker = ZipEntryProbe.read(jar, EeaFiles.EEA_FOR_GAV_FILENAME);
+        assertTrue(marker.isPresent());
+        assertArrayEquals(new byte[0], marker.get());
+    }
+
+    /**
+     * A JAR with a few class entries before and after the marker.
+     */
+    private File writeJar(final int method, final String comment) throws IOException {
+        final File jar = folder.newFile();
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar.toPath()))) {
+            if (comment != null) {
+                out.setComment(comment);
+            }
+            write(out, "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8), method);
+            write(out, "org/example/Library.class", new byte[1000], method);
+            write(out, EeaFiles.EEA_FOR_GAV_FILENAME, MARKER, method);
+            write(out, "org/example/Other.class", new byte[10], method);
+        }
+        return jar;
+    }
+
+    private static void write(final ZipOutputStream out, final String name, final byte[] content, final int method)
+            throws IOException {
+        final ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(method);
+        if (method == ZipEntry.STORED) {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putNextEntry(entry);
+        out.write(content);
+        out.closeEntry();
+    }
+
+}
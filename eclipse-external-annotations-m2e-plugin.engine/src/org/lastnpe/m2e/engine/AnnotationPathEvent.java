@@ -0,0 +1,25 @@
+package org.lastnpe.m2e.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for setting the external annotations path
+ * attribute of a classpath entry.
+ */
+@Name("org.lastnpe.m2e.SetAnnotationPath")
+@Label("EEA Set Annotation Path")
+@Category({ "lastnpe", "m2e" })
+@StackTrace(false)
+public final class AnnotationPathEvent extends Event {
+
+    @Label("Classpath Entry")
+    public String path;
+
+    @Label("Annotation Path")
+    public String annotationPath;
+
+}
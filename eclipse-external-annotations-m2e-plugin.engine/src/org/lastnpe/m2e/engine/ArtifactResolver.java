@@ -0,0 +1,22 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Resolves dependencies to the file (JAR) or directory (workspace project) of
+ * their artifact; in Eclipse through M2E, in a plain JVM e.g. from a local
+ * repository.
+ *
+ * @param <D> the dependency type, e.g. org.apache.maven.model.Dependency
+ * @param <E> the exception thrown if a dependency cannot be resolved at all
+ */
+@FunctionalInterface
+public interface ArtifactResolver<D, E extends Exception> {
+
+    /**
+     * @return the artifact file or directory, empty if it was not resolved
+     */
+    Optional<File> resolve(D dependency) throws E;
+
+}
@@ -0,0 +1,29 @@
+package org.lastnpe.m2e.engine;
+
+/**
+ * A classpath entry of the project being configured.
+ */
+public interface ClasspathEntry {
+
+    /**
+     * Path of the entry, as understood by {@link Workspace#getLocation(String)}.
+     */
+    String getPath();
+
+    /**
+     * @return groupId, or null if the entry is not a Maven artifact
+     */
+    String getGroupId();
+
+    String getArtifactId();
+
+    String getVersion();
+
+    /**
+     * @return classifier, or null if it has none
+     */
+    String getClassifier();
+
+    void setAnnotationPath(String annotationPath);
+
+}
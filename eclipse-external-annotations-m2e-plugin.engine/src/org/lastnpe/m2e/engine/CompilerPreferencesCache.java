@@ -0,0 +1,119 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Parsed JDT compiler preferences (org.eclipse.jdt.core.prefs and
+ * compilerArguments properties files), remembered for as long as Eclipse runs.
+ *
+ * <p>
+ * Typically all modules of a reactor share the same preferences artifact, so
+ * the same file would otherwise be opened and parsed once per module. Files are
+ * identified by path, length and lastModified time stamp; the parsed options are
+ * stored by SHA-256 of the content, so that copies of the same preferences (e.g.
+ * the same artifact in several versions) share one immutable map.
+ */
+public class CompilerPreferencesCache {
+
+    private final Map<List<Object>, Optional<String>> hashesByFile = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, String>> optionsByHash = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the raw content of preferences, empty if there are none.
+     */
+    @FunctionalInterface
+    public interface ContentLoader {
+        Optional<byte[]> load() throws IOException;
+    }
+
+    /**
+     * Get the parsed options of a preferences file, or of an entry inside an
+     * archive, loading and parsing it only if it is not known yet.
+     *
+     * @param file the file whose length and time stamp tell whether the content may have changed; for an archive
+     *            entry, the archive
+     * @param entryName name of the entry in the archive, or of the file
+     * @param charset with which to decode the content
+     * @param loader reads the content
+     * @return the options, as an immutable map, if there are preferences
+     */
+    public Optional<Map<String, String>> get(final File file, final String entryName, final Charset charset,
+            final ContentLoader loader) throws IOException {
+        final long length = file.length();
+        final long lastModified = file.lastModified();
+        if (lastModified == 0L) {
+            // Does not exist (or cannot be accessed), so there is nothing to identify it by
+            return loader.load().map(content -> parse(content, charset));
+        }
+        final List<Object> key = Arrays.asList(file.getAbsolutePath(), entryName, charset.name(), length,
+                lastModified);
+        final Optional<String> knownHash = hashesByFile.get(key);
+        if (knownHash != null) {
+            if (!knownHash.isPresent()) {
+                return Optional.empty();
+            }
+            final Map<String, String> options = optionsByHash.get(knownHash.get());
+            if (options != null) {
+                return Optional.of(options);
+            }
+        }
+
+        final Optional<byte[]> content = loader.load();
+        if (!content.isPresent()) {
+            hashesByFile.put(key, Optional.empty());
+            return Optional.empty();
+        }
+        final String hash = charset.name() + ':' + sha256(content.get());
+        hashesByFile.put(key, Optional.of(hash));
+        return Optional.of(optionsByHash.computeIfAbsent(hash, h -> parse(content.get(), charset)));
+    }
+
+    public int size() {
+        return optionsByHash.size();
+    }
+
+    public void clear() {
+        hashesByFile.clear();
+        optionsByHash.clear();
+    }
+
+    private static Map<String, String> parse(final byte[] content, final Charset charset) {
+        final Properties properties = new Properties();
+        try (InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(content), charset)) {
+            properties.load(reader);
+        } catch (final IOException e) {
+            // Reading from memory does not fail
+            throw new IllegalStateException(e);
+        }
+        final Map<String, String> options = new HashMap<>();
+        for (final String name : properties.stringPropertyNames()) {
+            options.put(name, properties.getProperty(name));
+        }
+        return Collections.unmodifiableMap(options);
+    }
+
+    private static String sha256(final byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (final NoSuchAlgorithmException e) {
+            // Every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
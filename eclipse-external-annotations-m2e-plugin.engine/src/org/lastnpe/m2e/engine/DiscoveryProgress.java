@@ -0,0 +1,44 @@
+package org.lastnpe.m2e.engine;
+
+/**
+ * Progress reporting and cancellation of discovery, e.g. by an Eclipse
+ * progress monitor. {@link #worked(String)} may be called concurrently when
+ * classpath entries are probed in parallel.
+ */
+public interface DiscoveryProgress {
+
+    /**
+     * Neither reports anything, nor is ever cancelled.
+     */
+    DiscoveryProgress NONE = new DiscoveryProgress() {
+        @Override
+        public void begin(final int artifacts) {
+        }
+
+        @Override
+        public void worked(final String path) {
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return false;
+        }
+    };
+
+    /**
+     * Called once, with how many artifacts discovery is going to look at.
+     */
+    void begin(int artifacts);
+
+    /**
+     * Called after each artifact was looked at.
+     */
+    void worked(String path);
+
+    /**
+     * Checked before each artifact; if true, discovery stops with a
+     * {@link java.util.concurrent.CancellationException}.
+     */
+    boolean isCanceled();
+
+}
@@ -0,0 +1,231 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the .eea files of several EEA archives or directories into one ZIP,
+ * for classpath containers such as the JRE, which take only one annotation
+ * path.
+ *
+ * <p>
+ * The merged archive is named after a hash of the .eea files it contains, so
+ * it is shared by all projects whose inputs have the same content, wherever
+ * they are, and stays the same across Eclipse restarts as long as that
+ * content does. Inputs are only read again if their paths or their state (the
+ * length and time stamp of every input archive, and of every .eea file of
+ * every input directory) changed since they were last merged in this Eclipse
+ * session. Archives of earlier content are not deleted, as projects which were
+ * not updated since may still point to them. If several inputs have a .eea
+ * file for the same class, the first one wins, just like the first JAR on a
+ * classpath.
+ */
+public final class EeaArchiveMerger {
+
+    private static final String EEA_EXTENSION = ".eea";
+    private static final String PREFIX = "merged-";
+    private static final String SUFFIX = ".zip";
+    private static final int FORMAT = 3;
+    private static final int HASH_LENGTH = 32;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaArchiveMerger.class);
+
+    private final File directory;
+
+    /** Merged archives by the paths and state of their inputs. */
+    private final Map<String, File> merged = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory where to keep the merged archives, e.g. in the plugin state location
+     */
+    public EeaArchiveMerger(final File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * The merged archive of the given inputs, built unless there already is
+     * one of the inputs in their current state, or one with the same content.
+     *
+     * @param inputs EEA archives or directories, in order of precedence
+     * @return the merged archive
+     * @throws IOException if an input cannot be read, or the archive cannot be written
+     */
+    public File merge(final List<File> inputs) throws IOException {
+        final String state = hashPaths(inputs) + '-' + hashState(inputs);
+        final File known = merged.get(state);
+        if (known != null && known.isFile()) {
+            return known;
+        }
+        Files.createDirectories(directory.toPath());
+        final File tmpFile = File.createTempFile(PREFIX, SUFFIX + ".tmp", directory);
+        try {
+            final MessageDigest digest = newDigest();
+            final int count = write(inputs, tmpFile, digest);
+            final File archive = new File(directory, PREFIX + toHex(digest) + SUFFIX);
+            if (archive.isFile()) {
+                LOGGER.debug("{} already has the {} .eea files of {}", archive, count, inputs);
+            } else {
+                Files.move(tmpFile.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                LOGGER.info("Merged {} .eea files of {} into {}", count, inputs, archive);
+            }
+            merged.put(state, archive);
+            return archive;
+        } finally {
+            Files.deleteIfExists(tmpFile.toPath());
+        }
+    }
+
+    /**
+     * Write the .eea files of the inputs to the target, and their names and
+     * content, in order, to the digest.
+     */
+    private static int write(final List<File> inputs, final File target, final MessageDigest digest)
+            throws IOException {
+        final Set<String> names = new HashSet<>();
+        int overlaps = 0;
+        try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(target.toPath()));
+                DataOutputStream content = new DataOutputStream(
+                        new DigestOutputStream(OutputStream.nullOutputStream(), digest))) {
+            content.writeInt(FORMAT);
+            for (final File input : inputs) {
+                if (input.isDirectory()) {
+                    for (final Path eea : listEeaFiles(input.toPath())) {
+                        final String name = toEntryName(input.toPath().relativize(eea));
+                        if (names.add(name)) {
+                            writeEntry(name, Files.readAllBytes(eea), out, content);
+                        } else {
+                            overlaps++;
+                        }
+                    }
+                } else {
+                    try (ZipFile zip = new ZipFile(input)) {
+                        final Enumeration<? extends ZipEntry> entries = zip.entries();
+                        while (entries.hasMoreElements()) {
+                            final ZipEntry entry = entries.nextElement();
+                            if (entry.isDirectory() || !entry.getName().endsWith(EEA_EXTENSION)) {
+                                continue;
+                            }
+                            if (names.add(entry.getName())) {
+                                try (InputStream in = zip.getInputStream(entry)) {
+                                    writeEntry(entry.getName(), in.readAllBytes(), out, content);
+                                }
+                            } else {
+                                overlaps++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        if (overlaps > 0) {
+            LOGGER.info("{} .eea files of {} were already provided by an earlier input, and ignored", overlaps,
+                    inputs);
+        }
+        return names.size();
+    }
+
+    private static void writeEntry(final String name, final byte[] bytes, final ZipOutputStream out,
+            final DataOutputStream content) throws IOException {
+        out.putNextEntry(new ZipEntry(name));
+        out.write(bytes);
+        out.closeEntry();
+        content.writeUTF(name);
+        content.writeInt(bytes.length);
+        content.write(bytes);
+    }
+
+    /**
+     * Hex SHA-256 of the paths of all inputs, in order.
+     */
+    private static String hashPaths(final List<File> inputs) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(),
+                digest))) {
+            out.writeInt(FORMAT);
+            for (final File input : inputs) {
+                out.writeUTF(input.getAbsolutePath());
+            }
+        }
+        return toHex(digest);
+    }
+
+    /**
+     * Hex SHA-256 of the state of all inputs.
+     */
+    private static String hashState(final List<File> inputs) throws IOException {
+        final MessageDigest digest = newDigest();
+        try (DataOutputStream out = new DataOutputStream(new DigestOutputStream(OutputStream.nullOutputStream(),
+                digest))) {
+            out.writeInt(FORMAT);
+            for (final File input : inputs) {
+                if (input.isDirectory()) {
+                    for (final Path eea : listEeaFiles(input.toPath())) {
+                        out.writeUTF(toEntryName(input.toPath().relativize(eea)));
+                        out.writeLong(Files.size(eea));
+                        out.writeLong(Files.getLastModifiedTime(eea).toMillis());
+                    }
+                } else if (input.isFile()) {
+                    out.writeLong(input.length());
+                    out.writeLong(input.lastModified());
+                } else {
+                    throw new IOException("EEA input does not exist: " + input);
+                }
+            }
+        }
+        return toHex(digest);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The first half of the digest, which is plenty to tell contents apart, and
+     * keeps the file name short of Windows' path length limit.
+     */
+    private static String toHex(final MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest()).substring(0, HASH_LENGTH);
+    }
+
+    private static List<Path> listEeaFiles(final Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(EEA_EXTENSION) && Files.isRegularFile(p))
+                    .sorted().collect(Collectors.toCollection(ArrayList::new));
+        }
+    }
+
+    private static String toEntryName(final Path relativePath) {
+        return relativePath.toString().replace(File.separatorChar, '/');
+    }
+
+}
@@ -0,0 +1,244 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Catalog of all *-eea artifacts in a local Maven repository, so that their
+ * EEA can be applied to matching dependencies of projects which do not
+ * depend on the *-eea artifact themselves.
+ *
+ * <p>
+ * The repository is scanned once, and the paths of the *-eea JARs found are
+ * persisted; artifacts installed later are {@link #add(File) added} one by
+ * one, or again if they are re-installed. The GAVs claimed by each JAR come
+ * from its eea-for-gav marker, which the caller reads through its
+ * {@link EeaMarkerIndex}, so JARs are only opened again if they changed. The
+ * resulting {@link GavMatcher} is kept until the repository is scanned again
+ * or a JAR is added, so that a lookup does not touch the file system.
+ *
+ * <p>
+ * If several versions of the same *-eea artifact are in the repository, the
+ * highest one wins for the GAVs they all claim.
+ */
+public final class EeaCatalog {
+
+    private static final String EEA_SUFFIX = "-eea";
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaCatalog.class);
+
+    private final File repository;
+    private final File catalogFile;
+    private final Comparator<String> versionComparator;
+
+    private final Set<File> jars = new LinkedHashSet<>();
+    private boolean scanned;
+    private GavMatcher<String> matcher;
+
+    /**
+     * @param repository the local Maven repository
+     * @param catalogFile where to persist the paths of the *-eea JARs found
+     * @param versionComparator Maven's version order, to prefer the highest version
+     */
+    public EeaCatalog(final File repository, final File catalogFile, final Comparator<String> versionComparator) {
+        this.repository = repository;
+        this.catalogFile = catalogFile;
+        this.versionComparator = versionComparator;
+    }
+
+    public File getRepository() {
+        return repository;
+    }
+
+    /**
+     * Whether the repository was scanned, now or (if the catalog file was
+     * loaded) in an earlier session.
+     */
+    public synchronized boolean isScanned() {
+        return scanned;
+    }
+
+    public synchronized int size() {
+        return jars.size();
+    }
+
+    /**
+     * The *-eea JARs in the catalog.
+     */
+    public synchronized List<File> getJars() {
+        return new ArrayList<>(jars);
+    }
+
+    public synchronized void load() {
+        if (!catalogFile.isFile()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(catalogFile.toPath(), StandardCharsets.UTF_8)) {
+            final String header = reader.readLine();
+            if (header == null || !header.equals(repository.getAbsolutePath())) {
+                LOGGER.info("Ignoring EEA catalog of another repository: {}", catalogFile);
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    jars.add(new File(line));
+                }
+            }
+            scanned = true;
+            matcher = null;
+        } catch (final IOException e) {
+            LOGGER.error("Ignoring unreadable EEA catalog: {}", catalogFile, e);
+            jars.clear();
+        }
+    }
+
+    /**
+     * Find all *-eea JARs in the repository, replacing what was found before,
+     * and persist their paths.
+     */
+    public void scan() {
+        final List<File> found = new ArrayList<>();
+        try {
+            Files.walkFileTree(repository.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(final Path dir, final BasicFileAttributes attrs) {
+                    if (dir.getFileName() != null && dir.getFileName().toString().endsWith(EEA_SUFFIX)) {
+                        findVersions(dir.toFile(), found);
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(final Path file, final IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (final IOException e) {
+            LOGGER.error("IOException while scanning for *-eea artifacts: {}", repository, e);
+            return;
+        }
+        synchronized (this) {
+            jars.clear();
+            jars.addAll(found);
+            scanned = true;
+            matcher = null;
+            save();
+        }
+        LOGGER.info("Found {} *-eea artifacts in {}", found.size(), repository);
+    }
+
+    /**
+     * Add a *-eea JAR installed into the repository after it was scanned, or
+     * take the new marker of one which was installed again.
+     */
+    public synchronized void add(final File jar) {
+        matcher = null;
+        if (jars.add(jar)) {
+            save();
+        }
+    }
+
+    /**
+     * Whether a file is the main JAR of a *-eea artifact of the repository,
+     * i.e. <code>.../artifactId-eea/version/artifactId-eea-version.jar</code>.
+     */
+    public static boolean isEeaJar(final File file) {
+        final File versionDir = file.getParentFile();
+        final File artifactDir = versionDir == null ? null : versionDir.getParentFile();
+        return artifactDir != null && artifactDir.getName().endsWith(EEA_SUFFIX)
+                && file.getName().equals(artifactDir.getName() + '-' + versionDir.getName() + ".jar");
+    }
+
+    /**
+     * The GAVs claimed by all *-eea JARs, to the absolute path of the JAR.
+     *
+     * @param markers reads the eea-for-gav marker of a JAR, e.g. {@link ExternalAnnotationsEngine#getMarker(File)}
+     */
+    public synchronized GavMatcher<String> getMatcher(final Function<File, List<MavenGAV>> markers) {
+        if (matcher == null) {
+            matcher = buildMatcher(markers);
+        }
+        return matcher;
+    }
+
+    private GavMatcher<String> buildMatcher(final Function<File, List<MavenGAV>> markers) {
+        // artifacts in a stable order, and the highest version of each first, so that it wins
+        final Map<File, TreeMap<String, File>> versionsByArtifact = new TreeMap<>();
+        for (final File jar : jars) {
+            if (jar.isFile()) {
+                final File versionDir = jar.getParentFile();
+                versionsByArtifact.computeIfAbsent(versionDir.getParentFile(),
+                        a -> new TreeMap<>(versionComparator.reversed())).put(versionDir.getName(), jar);
+            }
+        }
+        final GavMatcher.Builder<String> builder = GavMatcher.builder();
+        final Map<String, File> artifactOfPath = new HashMap<>();
+        for (final Map.Entry<File, TreeMap<String, File>> artifact : versionsByArtifact.entrySet()) {
+            for (final File jar : artifact.getValue().values()) {
+                final String path = jar.getAbsolutePath();
+                artifactOfPath.put(path, artifact.getKey());
+                markers.apply(jar).forEach(gav -> builder.add(gav, path));
+            }
+        }
+        final GavMatcher<String> result = builder.build();
+        result.getConflicts().stream()
+                .filter(c -> !artifactOfPath.get(c.getUsed()).equals(artifactOfPath.get(c.getIgnored())))
+                .forEach(c -> LOGGER.warn("Conflicting External Annotations in {}: {}", repository, c));
+        return result;
+    }
+
+    private static void findVersions(final File artifactDir, final List<File> found) {
+        final File[] versionDirs = artifactDir.listFiles(File::isDirectory);
+        if (versionDirs == null) {
+            return;
+        }
+        for (final File versionDir : versionDirs) {
+            final File jar = new File(versionDir, artifactDir.getName() + '-' + versionDir.getName() + ".jar");
+            if (jar.isFile()) {
+                found.add(jar);
+            }
+        }
+    }
+
+    private void save() {
+        final File tmpFile = new File(catalogFile.getPath() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(tmpFile.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(repository.getAbsolutePath());
+                writer.newLine();
+                for (final File jar : jars) {
+                    writer.write(jar.getPath());
+                    writer.newLine();
+                }
+            }
+            Files.move(tmpFile.toPath(), catalogFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            LOGGER.error("IOException while writing EEA catalog: {}", catalogFile, e);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the files the configurator looks for in dependencies, which are
+ * either a JAR from the local repository or, for workspace projects, a
+ * directory such as target/classes.
+ */
+public final class EeaFiles {
+
+    public static final String EEA_FOR_GAV_FILENAME = "eea-for-gav";
+    public static final String JDT_CORE_PREFS_FILENAME = "org.eclipse.jdt.core.prefs";
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaFiles.class);
+
+    private EeaFiles() {
+    }
+
+    /**
+     * Reads content of a name file from either inside a JAR or a directory.
+     * Emits a {@link ProbeEvent} if Java Flight Recorder is recording it.
+     *
+     * @param fileOrDirectory either a ZIP/JAR file, or a directory
+     * @param fileName file to look for in that ZIP/JAR file or directory
+     * @return content of file, if any
+     */
+    public static Optional<byte[]> read(final File fileOrDirectory, final String fileName) {
+        final ProbeEvent event = new ProbeEvent();
+        event.begin();
+        final Optional<byte[]> content = doRead(fileOrDirectory, fileName, event);
+        if (event.shouldCommit()) {
+            event.path = fileOrDirectory.getPath();
+            event.artifactSize = fileOrDirectory.isFile() ? fileOrDirectory.length() : 0;
+            event.fileName = fileName;
+            if (content.isPresent()) {
+                event.size = content.get().length;
+                event.outcome = ProbeEvent.FOUND;
+            } else if (event.outcome == null) {
+                event.outcome = ProbeEvent.MISSING;
+            }
+            event.commit();
+        }
+        return content;
+    }
+
+    private static Optional<byte[]> doRead(final File fileOrDirectory, final String fileName,
+            final ProbeEvent event) {
+        if (!fileOrDirectory.exists()) {
+            LOGGER.error("File does not exist: {}", fileOrDirectory);
+            event.outcome = ProbeEvent.ERROR;
+            return Optional.empty();
+        }
+        if (fileOrDirectory.isDirectory()) {
+            final File file = new File(fileOrDirectory, fileName);
+            return readFile(file.toPath());
+        } else if (fileOrDirectory.isFile()) {
+            try {
+                return ZipEntryProbe.read(fileOrDirectory, fileName);
+            } catch (final IOException e) {
+                LOGGER.error("IOException from ZipEntryProbe for: {}!{}", fileOrDirectory, fileName, e);
+                event.outcome = ProbeEvent.ERROR;
+                return Optional.empty();
+            }
+        } else {
+            LOGGER.error("File is neither a directory nor a file: {}", fileOrDirectory);
+            event.outcome = ProbeEvent.ERROR;
+            return Optional.empty();
+        }
+    }
+
+    public static Optional<byte[]> readFile(final Path path) {
+        try {
+            if (Files.exists(path)) {
+                return Optional.of(Files.readAllBytes(path));
+            } else {
+                return Optional.empty();
+            }
+        } catch (final IOException e) {
+            LOGGER.error("IOException from Files.readAllBytes for: {}", path, e);
+            return Optional.empty();
+        }
+    }
+
+}
@@ -0,0 +1,277 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent index of which JARs and directories contain an eea-for-gav marker,
+ * and which {@link MavenGAV}s it lists.
+ *
+ * <p>
+ * Entries are keyed by canonical path and validated against the length and
+ * lastModified time stamp of the artifact, so that an unchanged artifact never
+ * has to be opened again, not even after an Eclipse restart. For directories
+ * the stamp of the marker file itself is used (or that of the directory, if it
+ * has no marker), because writing into a directory does not change its own
+ * time stamp.
+ *
+ * <p>
+ * JARs without a marker, which are almost all of them, are not stored as
+ * entries, but only as fingerprints in a bounded {@link NegativeFilter}, so
+ * that recognizing them costs a single stat, and neither memory nor the
+ * index file grows with the size of the local repository.
+ */
+public class EeaMarkerIndex {
+
+    private static final int MAGIC = 0x45454149; // "EEAI"
+    private static final int VERSION = 2;
+
+    /** Enough for the JARs of a very large workspace; at most 4 MB. */
+    private static final int NEGATIVE_CAPACITY = 1 << 17;
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(EeaMarkerIndex.class);
+
+    private final File indexFile;
+    private final String markerFileName;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final NegativeFilter negatives = new NegativeFilter(NEGATIVE_CAPACITY);
+    private volatile boolean dirty;
+
+    public EeaMarkerIndex(final File indexFile, final String markerFileName) {
+        this.indexFile = indexFile;
+        this.markerFileName = markerFileName;
+    }
+
+    /**
+     * Look up the GAVs of a JAR or directory.
+     *
+     * @param fileOrDirectory either a ZIP/JAR file, or a directory
+     * @return the GAVs listed by its marker (empty list if it has none), or empty
+     *         if the artifact is not indexed or changed since it was indexed
+     */
+    public Optional<List<MavenGAV>> get(final File fileOrDirectory) {
+        final OptionalLong fingerprint = fingerprint(fileOrDirectory);
+        if (fingerprint.isPresent() && negatives.contains(fingerprint.getAsLong())) {
+            return Optional.of(Collections.emptyList());
+        }
+        final Optional<String> key = key(fileOrDirectory);
+        if (!key.isPresent()) {
+            return Optional.empty();
+        }
+        final Entry entry = entries.get(key.get());
+        if (entry == null) {
+            return Optional.empty();
+        }
+        final Stamp stamp = stamp(fileOrDirectory);
+        if (entry.length != stamp.length || entry.lastModified != stamp.lastModified) {
+            entries.remove(key.get(), entry);
+            dirty = true;
+            return Optional.empty();
+        }
+        return Optional.of(entry.gavs);
+    }
+
+    /**
+     * Record the GAVs of a JAR or directory, which must exist.
+     *
+     * @param fileOrDirectory either a ZIP/JAR file, or a directory
+     * @param gavs the GAVs listed by its marker, or an empty list if it has none
+     */
+    public void put(final File fileOrDirectory, final List<MavenGAV> gavs) {
+        if (!fileOrDirectory.exists()) {
+            return;
+        }
+        if (gavs.isEmpty()) {
+            final OptionalLong fingerprint = fingerprint(fileOrDirectory);
+            if (fingerprint.isPresent()) {
+                negatives.add(fingerprint.getAsLong());
+                key(fileOrDirectory).ifPresent(entries::remove);
+                dirty = true;
+                return;
+            }
+        }
+        key(fileOrDirectory).ifPresent(key -> {
+            final Stamp stamp = stamp(fileOrDirectory);
+            entries.put(key, new Entry(stamp.length, stamp.lastModified,
+                    gavs.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(gavs))));
+            dirty = true;
+        });
+    }
+
+    /**
+     * The number of artifacts with a marker, and of directories.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of fingerprints of JARs without a marker.
+     */
+    public int negativeSize() {
+        return negatives.size();
+    }
+
+    /**
+     * Forget all entries, both in memory and on disk.
+     */
+    public void clear() {
+        entries.clear();
+        negatives.clear();
+        dirty = false;
+        try {
+            Files.deleteIfExists(indexFile.toPath());
+            LOGGER.info("Cleared {} index {}", markerFileName, indexFile);
+        } catch (final IOException e) {
+            LOGGER.error("IOException while deleting index: {}", indexFile, e);
+        }
+    }
+
+    public void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.info("Ignoring index in unknown format: {}", indexFile);
+                return;
+            }
+            final int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                final String key = in.readUTF();
+                final long length = in.readLong();
+                final long lastModified = in.readLong();
+                final int gavCount = in.readInt();
+                final List<MavenGAV> gavs = new ArrayList<>(gavCount);
+                for (int j = 0; j < gavCount; j++) {
+                    gavs.add(MavenGAV.parse(in.readUTF()));
+                }
+                entries.put(key, new Entry(length, lastModified,
+                        gavs.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(gavs)));
+            }
+            negatives.readFrom(in);
+        } catch (final IOException | IllegalArgumentException e) {
+            LOGGER.error("Ignoring unreadable index: {}", indexFile, e);
+            entries.clear();
+            negatives.clear();
+        }
+    }
+
+    /**
+     * Write the index to disk, if it changed since it was loaded or last
+     * saved. Safe to call while others record markers, which are saved the
+     * next time if they came too late for this one.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                final List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(snapshot.size());
+                for (final Map.Entry<String, Entry> e : snapshot) {
+                    out.writeUTF(e.getKey());
+                    out.writeLong(e.getValue().length);
+                    out.writeLong(e.getValue().lastModified);
+                    out.writeInt(e.getValue().gavs.size());
+                    for (final MavenGAV gav : e.getValue().gavs) {
+                        out.writeUTF(gav.toString());
+                    }
+                }
+                negatives.writeTo(out);
+            }
+            Files.move(tmpFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException e) {
+            dirty = true;
+            LOGGER.error("IOException while writing index: {}", indexFile, e);
+        }
+    }
+
+    private Optional<String> key(final File fileOrDirectory) {
+        try {
+            return Optional.of(fileOrDirectory.getCanonicalPath());
+        } catch (final IOException e) {
+            LOGGER.error("IOException from getCanonicalPath for: {}", fileOrDirectory, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The {@link NegativeFilter} fingerprint of a JAR, from a single stat,
+     * or empty for a directory, or if it cannot be read.
+     */
+    private static OptionalLong fingerprint(final File file) {
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return OptionalLong.empty();
+            }
+            return OptionalLong.of(NegativeFilter.fingerprint(file.getAbsolutePath(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()));
+        } catch (final IOException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    private Stamp stamp(final File fileOrDirectory) {
+        if (fileOrDirectory.isDirectory()) {
+            final File marker = new File(fileOrDirectory, markerFileName);
+            if (marker.isFile()) {
+                return new Stamp(marker.length(), marker.lastModified());
+            } else {
+                return new Stamp(-1, fileOrDirectory.lastModified());
+            }
+        } else {
+            return new Stamp(fileOrDirectory.length(), fileOrDirectory.lastModified());
+        }
+    }
+
+    private static final class Stamp {
+        final long length;
+        final long lastModified;
+
+        Stamp(final long length, final long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private static final class Entry {
+        final long length;
+        final long lastModified;
+        final List<MavenGAV> gavs;
+
+        Entry(final long length, final long lastModified, final List<MavenGAV> gavs) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.gavs = gavs;
+        }
+    }
+
+}
@@ -0,0 +1,80 @@
+package org.lastnpe.m2e.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parses the content of an eea-for-gav marker: one {@link MavenGAV} per line,
+ * ignoring blank lines and lines starting with #.
+ *
+ * <p>
+ * The content is parsed as UTF-8 bytes in one pass, straight from the buffer
+ * the marker was read into: lines are found by scanning for '\n' (a trailing
+ * '\r' is trimmed, like all other whitespace), and each GAV is parsed from its
+ * bytes, so no String is made of the content or of its lines.
+ */
+public final class EeaMarkerParser {
+
+    private EeaMarkerParser() {
+    }
+
+    /**
+     * The GAVs of a marker.
+     *
+     * @param source where the content is from, for error messages
+     * @throws IllegalArgumentException if a line is not a GAV
+     */
+    public static List<MavenGAV> parse(final String content, final Object source) throws IllegalArgumentException {
+        return parse(content.getBytes(StandardCharsets.UTF_8), source);
+    }
+
+    /**
+     * The GAVs of a marker.
+     *
+     * @param content the UTF-8 content of the marker
+     * @param source where the content is from, for error messages
+     * @throws IllegalArgumentException if a line is not a GAV
+     */
+    public static List<MavenGAV> parse(final byte[] content, final Object source) throws IllegalArgumentException {
+        final List<MavenGAV> result = new ArrayList<>();
+        parse(content, source, result::add);
+        return result;
+    }
+
+    /**
+     * Pass each GAV of a marker to a consumer, as soon as its line is parsed.
+     *
+     * @param content the UTF-8 content of the marker
+     * @param source where the content is from, for error messages
+     * @throws IllegalArgumentException if a line is not a GAV, with its line number
+     */
+    public static void parse(final byte[] content, final Object source, final Consumer<MavenGAV> gavs)
+            throws IllegalArgumentException {
+        int lineNumber = 0;
+        int lineStart = 0;
+        while (lineStart <= content.length) {
+            lineNumber++;
+            int lineEnd = lineStart;
+            while (lineEnd < content.length && content[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int start = lineStart;
+            while (start < lineEnd && (content[start] & 0xFF) <= ' ') {
+                start++;
+            }
+            if (start < lineEnd && content[start] != '#') {
+                try {
+                    gavs.accept(MavenGAV.parse(content, start, lineEnd));
+                } catch (final IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Bad line " + lineNumber + " in "
+                            + EeaFiles.EEA_FOR_GAV_FILENAME + " of " + source + ": "
+                            + new String(content, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8).trim(), e);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+    }
+
+}
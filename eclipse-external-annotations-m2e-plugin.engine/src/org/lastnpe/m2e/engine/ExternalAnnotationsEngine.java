@@ -0,0 +1,476 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Discovery of external annotations and compiler options, independent of
+ * Eclipse: finds the EEA of each classpath entry and of the JRE by the
+ * eea-for-gav markers of the dependencies, and loads the JDT compiler options
+ * of the maven-compiler-plugin dependencies.
+ *
+ * <p>
+ * Everything it needs from its environment is behind {@link Workspace},
+ * {@link ClasspathEntry}, {@link ArtifactResolver} and {@link MarkerCache}, so
+ * the same code runs in the M2E configurator and in a plain JVM, e.g. to
+ * profile or load test it against a directory of projects and a local
+ * repository.
+ */
+public class ExternalAnnotationsEngine {
+
+    private static final MavenGAV JAVA_GAV = MavenGAV.of("java", "java");
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ExternalAnnotationsEngine.class);
+
+    private static final ThreadFactory PROBE_THREAD_FACTORY = new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "eea-for-gav probe " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    /** Shared by all engines, created on first use, see {@link #shutdownProbeExecutor()}. */
+    private static ExecutorService probeExecutor;
+
+    private final Workspace workspace;
+    private final MarkerCache markerCache;
+    private final Optional<EeaMarkerIndex> markerIndex;
+    private final CompilerPreferencesCache compilerPreferences;
+    private final Metrics metrics;
+
+    /**
+     * @param markerIndex persistent index to consult before probing, and to record probed markers in, if any
+     * @param metrics where to count and time what the engine does
+     */
+    public ExternalAnnotationsEngine(final Workspace workspace, final MarkerCache markerCache,
+            final Optional<EeaMarkerIndex> markerIndex, final CompilerPreferencesCache compilerPreferences,
+            final Metrics metrics) {
+        this.workspace = workspace;
+        this.markerCache = markerCache;
+        this.markerIndex = markerIndex;
+        this.compilerPreferences = compilerPreferences;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Set the annotationpath of each classpath entry which is a Maven artifact
+     * to the classpath entry whose eea-for-gav marker claims its GAV.
+     *
+     * @param parallelism how many classpath entries to probe concurrently; 1 probes them one after the other
+     * @throws CancellationException if interrupted while probing in parallel
+     */
+    public void configureClasspath(final List<? extends ClasspathEntry> classpath, final int parallelism) {
+        configureClasspath(classpath, parallelism, Optional.empty());
+    }
+
+    /**
+     * Like {@link #configureClasspath(List, int)}, falling back to the *-eea
+     * artifacts of a local repository for entries which no classpath entry
+     * claims.
+     *
+     * @param catalog the *-eea artifacts of the local repository, if enabled
+     */
+    public void configureClasspath(final List<? extends ClasspathEntry> classpath, final int parallelism,
+            final Optional<EeaCatalog> catalog) {
+        configureClasspath(classpath, parallelism, catalog, DiscoveryProgress.NONE, 0);
+    }
+
+    /**
+     * Like {@link #configureClasspath(List, int, Optional)}, reporting
+     * progress per classpath entry, and within a time budget: once it is used
+     * up, the entries not probed yet are skipped, and the annotation paths
+     * found so far are set. The caller can then probe the skipped ones later,
+     * e.g. in the background, and configure the classpath again.
+     *
+     * @param budgetMillis how long probing may take, 0 for as long as it takes
+     * @return the paths of the classpath entries which were not probed, because the budget ran out
+     * @throws CancellationException if progress was cancelled, or interrupted while probing in parallel
+     */
+    public List<String> configureClasspath(final List<? extends ClasspathEntry> classpath, final int parallelism,
+            final Optional<EeaCatalog> catalog, final DiscoveryProgress progress, final long budgetMillis) {
+        final List<String> classpathEntryPaths = classpath.stream().map(ClasspathEntry::getPath)
+                .collect(Collectors.toList());
+        final long start = System.nanoTime();
+        final long budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        final BooleanSupplier outOfTime = budgetMillis <= 0 ? () -> false
+                : () -> System.nanoTime() - start > budgetNanos;
+        final List<String> deferred = new ArrayList<>();
+        final GavMatcher<String> mapping = getExternalAnnotationMapping(classpathEntryPaths, parallelism, progress,
+                outOfTime, deferred);
+        if (!deferred.isEmpty()) {
+            metrics.add(Metrics.DISCOVERY_DEFERRED, deferred.size());
+            LOGGER.info("Probing took longer than {} ms, deferring {} of {} classpath entries", budgetMillis,
+                    deferred.size(), classpathEntryPaths.size());
+        }
+        final Optional<GavMatcher<String>> catalogMapping = catalog.map(c -> c.getMatcher(this::getMarker))
+                .filter(m -> !m.isEmpty());
+        if (mapping.isEmpty() && !catalogMapping.isPresent()) {
+            return deferred;
+        }
+        for (final ClasspathEntry cpEntry : classpath) {
+            if (cpEntry.getGroupId() == null) {
+                continue;
+            }
+            Optional<String> annotationPath = mapping.match(cpEntry.getGroupId(), cpEntry.getArtifactId(),
+                    cpEntry.getVersion(), cpEntry.getClassifier());
+            if (!annotationPath.isPresent() && catalogMapping.isPresent()) {
+                annotationPath = catalogMapping.get().match(cpEntry.getGroupId(), cpEntry.getArtifactId(),
+                        cpEntry.getVersion(), cpEntry.getClassifier());
+                metrics.increment(annotationPath.isPresent() ? Metrics.CATALOG_HITS : Metrics.CATALOG_MISSES);
+            }
+            annotationPath.ifPresent(cpEntry::setAnnotationPath);
+        }
+        return deferred;
+    }
+
+    /**
+     * Set the annotationpath of each classpath entry as the precompute goal
+     * recorded it for a module, instead of discovering it, if the classpath
+     * entries are still the same, which is told without reading the
+     * eea-for-gav marker of any of them, see
+     * {@link PrecomputedManifest#inputKey(String, Optional)}.
+     *
+     * @return whether they were set
+     */
+    public boolean applyPrecomputed(final PrecomputedManifest.Module module,
+            final List<? extends ClasspathEntry> classpath) {
+        final Optional<Map<String, String>> entryAnnotations = module.getEntryAnnotations(hashClasspath(classpath));
+        if (!entryAnnotations.isPresent()) {
+            metrics.increment(Metrics.MANIFEST_MISSES);
+            return false;
+        }
+        metrics.increment(Metrics.MANIFEST_HITS);
+        final Map<String, ClasspathEntry> byCoordinates = new HashMap<>();
+        for (final ClasspathEntry cpEntry : classpath) {
+            if (cpEntry.getGroupId() != null) {
+                byCoordinates.putIfAbsent(coordinates(cpEntry), cpEntry);
+            }
+        }
+        for (final Map.Entry<String, String> entryAnnotation : entryAnnotations.get().entrySet()) {
+            final ClasspathEntry cpEntry = byCoordinates.get(entryAnnotation.getKey());
+            final ClasspathEntry eeaEntry = byCoordinates.get(entryAnnotation.getValue());
+            if (cpEntry != null && eeaEntry != null) {
+                cpEntry.setAnnotationPath(eeaEntry.getPath());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The {@link PrecomputedManifest#hash(List)} of the classpath entries
+     * which are Maven artifacts, by their coordinates and locations.
+     */
+    public String hashClasspath(final List<? extends ClasspathEntry> classpath) {
+        final List<String> inputKeys = new ArrayList<>(classpath.size());
+        for (final ClasspathEntry cpEntry : classpath) {
+            if (cpEntry.getGroupId() == null) {
+                continue;
+            }
+            final Optional<File> location = metrics.time(Metrics.WORKSPACE_LOOKUP,
+                    () -> workspace.getLocation(cpEntry.getPath()));
+            inputKeys.add(PrecomputedManifest.inputKey(coordinates(cpEntry), location));
+        }
+        return PrecomputedManifest.hash(inputKeys);
+    }
+
+    /**
+     * The {@link PrecomputedManifest#hash(List)} of (*-eea or
+     * maven-compiler-plugin) dependencies, by their coordinates and
+     * artifacts, which are resolved, but not opened.
+     *
+     * @param coordinates the {@link PrecomputedManifest#coordinates} of a dependency
+     */
+    public <D, E extends Exception> String hashDependencies(final List<D> dependencies,
+            final Function<D, String> coordinates, final ArtifactResolver<D, E> resolver) throws E {
+        final List<String> inputKeys = new ArrayList<>(dependencies.size());
+        for (final D dependency : dependencies) {
+            inputKeys.add(PrecomputedManifest.inputKey(coordinates.apply(dependency), resolver.resolve(dependency)));
+        }
+        return PrecomputedManifest.hash(inputKeys);
+    }
+
+    private static String coordinates(final ClasspathEntry cpEntry) {
+        return PrecomputedManifest.coordinates(cpEntry.getGroupId(), cpEntry.getArtifactId(), cpEntry.getVersion(),
+                cpEntry.getClassifier());
+    }
+
+    /**
+     * Index the GAVs of the eea-for-gav markers of all classpath entries. If
+     * more than one entry claims the same GAV, the first one on the classpath
+     * wins, and the conflict is logged.
+     *
+     * @param parallelism how many classpath entries to probe concurrently; 1 probes them one after the other
+     * @throws CancellationException if interrupted while probing in parallel
+     */
+    public GavMatcher<String> getExternalAnnotationMapping(final List<String> classpathEntryPaths,
+            final int parallelism) {
+        return getExternalAnnotationMapping(classpathEntryPaths, parallelism, DiscoveryProgress.NONE, () -> false,
+                new ArrayList<>());
+    }
+
+    private GavMatcher<String> getExternalAnnotationMapping(final List<String> classpathEntryPaths,
+            final int parallelism, final DiscoveryProgress progress, final BooleanSupplier outOfTime,
+            final List<String> deferred) {
+        progress.begin(classpathEntryPaths.size());
+        final List<List<MavenGAV>> gavsPerEntry = probe(classpathEntryPaths, parallelism, progress, outOfTime);
+        final GavMatcher.Builder<String> builder = GavMatcher.builder();
+        for (int i = 0; i < classpathEntryPaths.size(); i++) {
+            final String cpEntryPath = classpathEntryPaths.get(i);
+            final List<MavenGAV> gavs = gavsPerEntry.get(i);
+            if (gavs == null) {
+                deferred.add(cpEntryPath);
+            } else {
+                gavs.forEach(gav -> builder.add(gav, cpEntryPath));
+            }
+        }
+        final GavMatcher<String> mapping = builder.build();
+        mapping.getConflicts().forEach(conflict -> LOGGER.warn("Conflicting External Annotations: {}", conflict));
+        return mapping;
+    }
+
+    /**
+     * Probe classpath entries for their eea-for-gav markers, with up to
+     * parallelism threads of the shared probe executor if parallelism is
+     * greater than 1, because on network drives or cold disks the latency of
+     * all the file stats and ZIP opens dominates.
+     *
+     * @return the GAVs of each classpath entry, in the same order as the given paths, or null for those
+     *         skipped because the time ran out
+     */
+    private List<List<MavenGAV>> probe(final List<String> classpathEntryPaths, final int parallelism,
+            final DiscoveryProgress progress, final BooleanSupplier outOfTime) {
+        if (parallelism <= 1 || classpathEntryPaths.size() < 2) {
+            final List<List<MavenGAV>> result = new ArrayList<>(classpathEntryPaths.size());
+            for (final String cpEntryPath : classpathEntryPaths) {
+                result.add(probe(cpEntryPath, progress, outOfTime));
+            }
+            return result;
+        }
+        // as many workers as this call may use, each taking the next entry until there are none left
+        final AtomicReferenceArray<List<MavenGAV>> gavs = new AtomicReferenceArray<>(classpathEntryPaths.size());
+        final AtomicInteger next = new AtomicInteger();
+        final Callable<Void> worker = () -> {
+            for (int i = next.getAndIncrement(); i < classpathEntryPaths.size(); i = next.getAndIncrement()) {
+                gavs.set(i, probe(classpathEntryPaths.get(i), progress, outOfTime));
+            }
+            return null;
+        };
+        try {
+            for (final Future<Void> future : getProbeExecutor()
+                    .invokeAll(Collections.nCopies(Math.min(parallelism, classpathEntryPaths.size()), worker))) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while probing for " + EeaFiles.EEA_FOR_GAV_FILENAME);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        final List<List<MavenGAV>> result = new ArrayList<>(gavs.length());
+        for (int i = 0; i < gavs.length(); i++) {
+            result.add(gavs.get(i));
+        }
+        return result;
+    }
+
+    private static synchronized ExecutorService getProbeExecutor() {
+        if (probeExecutor == null) {
+            // idle threads end after a minute, so it costs nothing between configurations
+            probeExecutor = Executors.newCachedThreadPool(PROBE_THREAD_FACTORY);
+        }
+        return probeExecutor;
+    }
+
+    /**
+     * Stop the threads which probe classpath entries in parallel, e.g. when
+     * the bundle is stopped. A later probe starts new ones.
+     */
+    public static synchronized void shutdownProbeExecutor() {
+        if (probeExecutor != null) {
+            probeExecutor.shutdownNow();
+            probeExecutor = null;
+        }
+    }
+
+    private List<MavenGAV> probe(final String cpEntryPath, final DiscoveryProgress progress,
+            final BooleanSupplier outOfTime) {
+        if (progress.isCanceled()) {
+            throw new CancellationException("Cancelled while probing for " + EeaFiles.EEA_FOR_GAV_FILENAME);
+        }
+        if (outOfTime.getAsBoolean()) {
+            return null;
+        }
+        final List<MavenGAV> gavs = probe(cpEntryPath);
+        progress.worked(cpEntryPath);
+        return gavs;
+    }
+
+    private List<MavenGAV> probe(final String cpEntryPath) {
+        final Optional<File> optionalFileOrDirectory = metrics.time(Metrics.WORKSPACE_LOOKUP,
+                () -> workspace.getLocation(cpEntryPath));
+        if (optionalFileOrDirectory.isPresent()) {
+            return getMarker(optionalFileOrDirectory.get());
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * The GAVs of the eea-for-gav marker of a JAR or directory, empty if it has none.
+     */
+    public List<MavenGAV> getMarker(final File dependency) {
+        final boolean[] missed = new boolean[1];
+        final List<MavenGAV> marker = markerCache.getMarker(dependency, d -> {
+            missed[0] = true;
+            return getIndexedMarker(d);
+        });
+        metrics.increment(missed[0] ? Metrics.MARKER_CACHE_MISSES : Metrics.MARKER_CACHE_HITS);
+        return marker;
+    }
+
+    private List<MavenGAV> getIndexedMarker(final File dependency) {
+        if (markerIndex.isPresent()) {
+            final Optional<List<MavenGAV>> indexed = markerIndex.get().get(dependency);
+            if (indexed.isPresent()) {
+                metrics.increment(Metrics.MARKER_INDEX_HITS);
+                return indexed.get();
+            }
+            metrics.increment(Metrics.MARKER_INDEX_MISSES);
+        }
+        final List<MavenGAV> result = readMarker(dependency);
+        markerIndex.ifPresent(i -> i.put(dependency, result));
+        return result;
+    }
+
+    private List<MavenGAV> readMarker(final File dependency) {
+        final Optional<byte[]> fileContent = metrics.time(Metrics.PROBE,
+                () -> EeaFiles.read(dependency, EeaFiles.EEA_FOR_GAV_FILENAME));
+        metrics.increment(Metrics.MARKERS_PROBED);
+        if (!fileContent.isPresent()) {
+            return Collections.emptyList();
+        }
+        metrics.increment(Metrics.MARKERS_FOUND);
+        final List<MavenGAV> result = EeaMarkerParser.parse(fileContent.get(), dependency);
+        result.forEach(gav -> LOGGER.info("Found EEA for {} in {}", gav, dependency));
+        return result;
+    }
+
+    /**
+     * Find the EEA of the JRE, i.e. the first of the given (*-eea) dependencies
+     * whose eea-for-gav marker claims java:java.
+     *
+     * @return the annotationpath to set on the JRE container, if any
+     */
+    public <D, E extends Exception> Optional<String> findJreAnnotationPath(final List<D> eeaDependencies,
+            final ArtifactResolver<D, E> resolver) throws E {
+        return findJreAnnotationPath(eeaDependencies, resolver, DiscoveryProgress.NONE);
+    }
+
+    /**
+     * Like {@link #findJreAnnotationPath(List, ArtifactResolver)}, reporting progress per dependency.
+     *
+     * @throws CancellationException if progress was cancelled
+     */
+    public <D, E extends Exception> Optional<String> findJreAnnotationPath(final List<D> eeaDependencies,
+            final ArtifactResolver<D, E> resolver, final DiscoveryProgress progress) throws E {
+        progress.begin(eeaDependencies.size());
+        for (final D dependency : eeaDependencies) {
+            if (progress.isCanceled()) {
+                throw new CancellationException("Cancelled while looking for the External Annotations of the JRE");
+            }
+            final Optional<File> eeaProjectOrJarFile = resolver.resolve(dependency);
+            final boolean found = eeaProjectOrJarFile.isPresent()
+                    && getMarker(eeaProjectOrJarFile.get()).contains(JAVA_GAV);
+            progress.worked(String.valueOf(dependency));
+            if (found) {
+                return Optional.of(metrics.time(Metrics.WORKSPACE_LOOKUP,
+                        () -> workspace.getAnnotationPath(eeaProjectOrJarFile.get())));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Load the org.eclipse.jdt.core.prefs of each of the given (maven-compiler-plugin) dependencies which has one.
+     *
+     * @return the options of each, in the order of the dependencies
+     */
+    public <D, E extends Exception> List<Map<String, String>> getCompilerOptions(final List<D> dependencies,
+            final ArtifactResolver<D, E> resolver) throws E {
+        final List<Map<String, String>> result = new ArrayList<>();
+        for (final D dependency : dependencies) {
+            final Optional<File> optionalFileOrDirectory = resolver.resolve(dependency);
+            if (!optionalFileOrDirectory.isPresent()) {
+                continue;
+            }
+            final File fileOrDirectory = optionalFileOrDirectory.get();
+            final File stampFile = fileOrDirectory.isDirectory()
+                    ? new File(fileOrDirectory, EeaFiles.JDT_CORE_PREFS_FILENAME)
+                    : fileOrDirectory;
+            try {
+                compilerPreferences.get(stampFile, EeaFiles.JDT_CORE_PREFS_FILENAME, StandardCharsets.UTF_8,
+                        () -> EeaFiles.read(fileOrDirectory, EeaFiles.JDT_CORE_PREFS_FILENAME))
+                        .ifPresent(options -> {
+                            metrics.increment(Metrics.PREFERENCES_LOADED);
+                            result.add(options);
+                        });
+            } catch (final IOException | IllegalArgumentException e) {
+                LOGGER.error("Could not read {} from {}", EeaFiles.JDT_CORE_PREFS_FILENAME, fileOrDirectory, e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Load the options of the compilerArguments properties file of the
+     * maven-compiler-plugin, unless it does not exist (yet), or it is in a
+     * .settings folder.
+     */
+    public Optional<Map<String, String>> getCompilerArgumentsOptions(final File propertiesFile) {
+        if (!propertiesFile.exists()) {
+            return Optional.empty();
+        }
+        if (propertiesFile.getPath().replace('\\', '/').contains("/.settings/")) {
+            return Optional.empty();
+        }
+        try {
+            // Properties files are ISO-8859-1, as read by Properties.load(InputStream)
+            return compilerPreferences.get(propertiesFile, propertiesFile.getName(), StandardCharsets.ISO_8859_1,
+                    () -> EeaFiles.readFile(propertiesFile.toPath()));
+        } catch (final IOException | IllegalArgumentException e) {
+            LOGGER.error("IOException while reading file: {}", propertiesFile, e);
+            return Optional.empty();
+        }
+    }
+
+}
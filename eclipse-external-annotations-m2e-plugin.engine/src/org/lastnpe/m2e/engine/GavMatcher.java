@@ -0,0 +1,165 @@
+package org.lastnpe.m2e.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Index of {@link MavenGAV}s to the EEA archive (or anything else) claiming
+ * them, for O(1) lookup of an artifact's coordinates.
+ *
+ * <p>
+ * Candidates are grouped by groupId:artifactId, and within that by
+ * specificity: a GAV with version and classifier wins over one with only a
+ * version, which wins over one with neither. This gives the same results as
+ * testing {@link MavenGAV#matches(String, String, String, String)} against each
+ * GAV, but deterministically picks the most specific one if several match.
+ *
+ * <p>
+ * If the very same GAV is claimed by two different values, the first one
+ * added wins (just like the first JAR on a classpath wins), and the other one
+ * is reported by {@link #getConflicts()}.
+ *
+ * @param <T> what the GAVs map to, e.g. the path of an EEA archive
+ */
+public final class GavMatcher<T> {
+
+    private final Map<String, Candidates<T>> candidates;
+    private final List<Conflict<T>> conflicts;
+
+    private GavMatcher(final Map<String, Candidates<T>> candidates, final List<Conflict<T>> conflicts) {
+        this.candidates = candidates;
+        this.conflicts = conflicts;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Find the value of the most specific GAV matching the given coordinates.
+     *
+     * @param version may be null
+     * @param classifier may be null
+     */
+    public Optional<T> match(final String groupId, final String artifactId, final String version,
+            final String classifier) {
+        final Candidates<T> c = candidates.get(key(groupId, artifactId));
+        if (c == null) {
+            return Optional.empty();
+        }
+        if (version != null) {
+            if (classifier != null && c.byVersionAndClassifier != null) {
+                final T value = c.byVersionAndClassifier.get(key(version, classifier));
+                if (value != null) {
+                    return Optional.of(value);
+                }
+            }
+            if (c.byVersion != null) {
+                final T value = c.byVersion.get(version);
+                if (value != null) {
+                    return Optional.of(value);
+                }
+            }
+        }
+        return Optional.ofNullable(c.any);
+    }
+
+    public boolean isEmpty() {
+        return candidates.isEmpty();
+    }
+
+    /**
+     * GAVs which were claimed by more than one value.
+     */
+    public List<Conflict<T>> getConflicts() {
+        return conflicts;
+    }
+
+    private static String key(final String first, final String second) {
+        return first + ':' + second;
+    }
+
+    public static final class Builder<T> {
+        private final Map<String, Candidates<T>> candidates = new HashMap<>();
+        private final List<Conflict<T>> conflicts = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder<T> add(final MavenGAV gav, final T value) {
+            Objects.requireNonNull(value, "value");
+            final Candidates<T> c = candidates.computeIfAbsent(key(gav.getGroupId(), gav.getArtifactId()),
+                    k -> new Candidates<>());
+            final T existing;
+            if (!gav.getVersion().isPresent()) {
+                existing = c.any;
+                if (existing == null) {
+                    c.any = value;
+                }
+            } else if (!gav.getClassifier().isPresent()) {
+                if (c.byVersion == null) {
+                    c.byVersion = new HashMap<>();
+                }
+                existing = c.byVersion.putIfAbsent(gav.getVersion().get(), value);
+            } else {
+                if (c.byVersionAndClassifier == null) {
+                    c.byVersionAndClassifier = new HashMap<>();
+                }
+                existing = c.byVersionAndClassifier
+                        .putIfAbsent(key(gav.getVersion().get(), gav.getClassifier().get()), value);
+            }
+            if (existing != null && !existing.equals(value)) {
+                conflicts.add(new Conflict<>(gav, existing, value));
+            }
+            return this;
+        }
+
+        public GavMatcher<T> build() {
+            return new GavMatcher<>(new HashMap<>(candidates), Collections.unmodifiableList(new ArrayList<>(conflicts)));
+        }
+    }
+
+    /**
+     * A GAV claimed by two values, of which the first one is used.
+     */
+    public static final class Conflict<T> {
+        private final MavenGAV gav;
+        private final T used;
+        private final T ignored;
+
+        Conflict(final MavenGAV gav, final T used, final T ignored) {
+            this.gav = gav;
+            this.used = used;
+            this.ignored = ignored;
+        }
+
+        public MavenGAV getGav() {
+            return gav;
+        }
+
+        public T getUsed() {
+            return used;
+        }
+
+        public T getIgnored() {
+            return ignored;
+        }
+
+        @Override
+        public String toString() {
+            return gav + " claimed by both " + used + " (used) and " + ignored + " (ignored)";
+        }
+    }
+
+    private static final class Candidates<T> {
+        Map<String, T> byVersionAndClassifier;
+        Map<String, T> byVersion;
+        T any;
+    }
+
+}
@@ -0,0 +1,24 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.File;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Remembers the eea-for-gav markers which were already probed, for as long
+ * as makes sense for the caller, e.g. one batch of project configurations.
+ */
+@FunctionalInterface
+public interface MarkerCache {
+
+    /**
+     * Does not remember anything.
+     */
+    MarkerCache NONE = (fileOrDirectory, probe) -> probe.apply(fileOrDirectory);
+
+    /**
+     * The GAVs of the eea-for-gav marker of a JAR or directory, using probe if not known yet.
+     */
+    List<MavenGAV> getMarker(File fileOrDirectory, Function<File, List<MavenGAV>> probe);
+
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2016 Red Hat, Inc. and others. All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.lastnpe.m2e.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maven "GAV" = Group ID, Artifact ID and (optional) Version &amp; Classifier.
+ *
+ * With convenience {@link #matches(String, String, String, String)} method.
+ *
+ * <p>
+ * Instances are canonical: {@link #parse(String)} and the <code>of</code>
+ * methods return the same instance for equal GAVs, so that the many GAVs read
+ * from the markers of all dependencies of a workspace share one object each,
+ * and equality is usually an identity check. The hash code is computed once.
+ *
+ * @author Michael Vorburger
+ */
+public final class MavenGAV {
+
+    /**
+     * The canonical instances. Not weak, because the GAVs claimed by the
+     * markers of a workspace are few and stay relevant for its lifetime.
+     */
+    private static final Map<MavenGAV, MavenGAV> INTERNED = new ConcurrentHashMap<>();
+
+    private final String groupId;
+    private final String artifactId;
+    private final String version; // null if absent
+    private final String classifier; // null if absent
+    private final int hash;
+
+    /**
+     * Parse a <code>groupId:artifactId[:version[:classifier]]</code> line,
+     * exactly like splitting the trimmed line at ':' would: trailing empty
+     * parts are dropped, anything after the classifier is ignored.
+     */
+    public static MavenGAV parse(String line) throws IllegalArgumentException {
+        int start = 0;
+        int end = line.length();
+        while (start < end && line.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        // the first 4 separators, and the number of parts up to the last non-empty one
+        final int[] colons = new int[4];
+        int colonCount = 0;
+        int parts = 0;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == ':') {
+                if (colonCount < colons.length) {
+                    colons[colonCount] = i;
+                }
+                colonCount++;
+            } else {
+                parts = colonCount + 1;
+            }
+        }
+        if (parts < 2) {
+            throw new IllegalArgumentException("Line must have at least groupId:artifactId, but was: " + line);
+        }
+        final String groupId = line.substring(start, colons[0]);
+        final String artifactId = part(line, colons, colonCount, 1, end);
+        final String version = parts > 2 ? part(line, colons, colonCount, 2, end) : null;
+        final String classifier = parts > 3 ? part(line, colons, colonCount, 3, end) : null;
+        return intern(groupId, artifactId, version, classifier);
+    }
+
+    private static String part(String line, int[] colons, int colonCount, int index, int end) {
+        return line.substring(colons[index - 1] + 1, index < colonCount ? colons[index] : end);
+    }
+
+    /**
+     * Like {@link #parse(String)}, for a line of UTF-8 bytes, without first
+     * making a String of the whole line. ':' is never part of a multi-byte
+     * character, so splitting the bytes at it is safe.
+     */
+    static MavenGAV parse(byte[] bytes, int from, int to) throws IllegalArgumentException {
+        int start = from;
+        int end = to;
+        while (start < end && (bytes[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (bytes[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        final int[] colons = new int[4];
+        int colonCount = 0;
+        int parts = 0;
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == ':') {
+                if (colonCount < colons.length) {
+                    colons[colonCount] = i;
+                }
+                colonCount++;
+            } else {
+                parts = colonCount + 1;
+            }
+        }
+        if (parts < 2) {
+            throw new IllegalArgumentException("Line must have at least groupId:artifactId, but was: "
+                    + new String(bytes, from, to - from, StandardCharsets.UTF_8));
+        }
+        final String groupId = new String(bytes, start, colons[0] - start, StandardCharsets.UTF_8);
+        final String artifactId = part(bytes, colons, colonCount, 1, end);
+        final String version = parts > 2 ? part(bytes, colons, colonCount, 2, end) : null;
+        final String classifier = parts > 3 ? part(bytes, colons, colonCount, 3, end) : null;
+        return intern(groupId, artifactId, version, classifier);
+    }
+
+    private static String part(byte[] bytes, int[] colons, int colonCount, int index, int end) {
+        final int start = colons[index - 1] + 1;
+        return new String(bytes, start, (index < colonCount ? colons[index] : end) - start, StandardCharsets.UTF_8);
+    }
+
+    public static MavenGAV of(String groupId, String artifactId, String version, String classifier) {
+        return intern(checkNotNull(groupId, "groupId"), checkNotNull(artifactId, "artifactId"),
+                checkNotNull(version, "version"), checkNotNull(classifier, "classifier"));
+    }
+
+    public static MavenGAV of(String groupId, String artifactId, String version) {
+        return intern(checkNotNull(groupId, "groupId"), checkNotNull(artifactId, "artifactId"),
+                checkNotNull(version, "version"), null);
+    }
+
+    public static MavenGAV of(String groupId, String artifactId) {
+        return intern(checkNotNull(groupId, "groupId"), checkNotNull(artifactId, "artifactId"), null, null);
+    }
+
+    private static MavenGAV intern(String groupId, String artifactId, String version, String classifier) {
+        final MavenGAV gav = new MavenGAV(groupId, artifactId, version, classifier);
+        final MavenGAV existing = INTERNED.putIfAbsent(gav, gav);
+        return existing == null ? gav : existing;
+    }
+
+    public boolean matches(String groupId, String artifactId, String version, String classifier) {
+        return this.groupId.equals(groupId)
+            && this.artifactId.equals(artifactId)
+            && (this.version == null || this.version.equals(version))
+            && (this.classifier == null || this.classifier.equals(classifier));
+    }
+
+    public String getGroupId() {
+        return groupId;
+    }
+
+    public String getArtifactId() {
+        return artifactId;
+    }
+
+    public Optional<String> getVersion() {
+        return Optional.ofNullable(version);
+    }
+
+    public Optional<String> getClassifier() {
+        return Optional.ofNullable(classifier);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof MavenGAV)) {
+            return false;
+        }
+        MavenGAV other = (MavenGAV) obj;
+        return hash == other.hash
+            && groupId.equals(other.groupId)
+            && artifactId.equals(other.artifactId)
+            && Objects.equals(version, other.version)
+            && Objects.equals(classifier, other.classifier);
+    }
+
+    @Override
+    public String toString() {
+        final int length = groupId.length() + artifactId.length() + 3
+                + (version == null ? 0 : version.length()) + (classifier == null ? 0 : classifier.length());
+        final StringBuilder sb = new StringBuilder(length).append(groupId).append(':').append(artifactId);
+        if (version != null) {
+            sb.append(':').append(version);
+        }
+        if (classifier != null) {
+            sb.append(':').append(classifier);
+        }
+        return sb.toString();
+    }
+
+    private MavenGAV(String groupId, String artifactId, String version, String classifier) {
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.version = version;
+        this.classifier = classifier;
+        int h = 31 + groupId.hashCode();
+        h = 31 * h + artifactId.hashCode();
+        h = 31 * h + (version == null ? 0 : version.hashCode());
+        this.hash = 31 * h + (classifier == null ? 0 : classifier.hashCode());
+    }
+
+    // as in Guava, of course
+    private static <T> T checkNotNull(T reference, String name) {
+        if (reference == null) {
+            throw new NullPointerException(name + " cannot be null");
+        } else {
+            return reference;
+        }
+    }
+
+}
@@ -0,0 +1,187 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact set of fingerprints of artifacts known to have no eea-for-gav
+ * marker, which is the vast majority of all JARs, so that they don't have to
+ * be opened again as long as they don't change.
+ *
+ * <p>
+ * A fingerprint is a 64 bit hash of an artifact's path, length and last
+ * modified time, so a changed artifact simply isn't found anymore. The
+ * chance of two different artifacts colliding is negligible (about 1 in
+ * 10^9 for 100k artifacts), and would only mean that a marker is missed
+ * until the artifact changes or the index is cleared.
+ *
+ * <p>
+ * Fingerprints are kept in open addressing tables of primitive longs, at
+ * most half full, so each costs 16 to 32 bytes, and memory is bounded: when
+ * the current table reaches its capacity, it becomes the previous one, and
+ * the one before is dropped. Fingerprints found in the previous table move
+ * to the current one, so what is still in use survives, while fingerprints
+ * of artifacts which were deleted or changed eventually disappear. At most
+ * twice the capacity is kept. Safe for concurrent use.
+ */
+public final class NegativeFilter {
+
+    private static final long EMPTY = 0;
+
+    private final int capacity;
+    private long[] current;
+    private int currentSize;
+    private long[] previous;
+
+    /**
+     * @param capacity how many fingerprints to keep for sure; up to twice as many are kept
+     */
+    public NegativeFilter(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.current = newTable(capacity);
+    }
+
+    /**
+     * The fingerprint of an artifact in a given state.
+     */
+    public static long fingerprint(final String path, final long length, final long lastModified) {
+        long h = 0xcbf29ce484222325L; // FNV-1a
+        for (int i = 0; i < path.length(); i++) {
+            h ^= path.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h = mix(h ^ mix(length + 0x9E3779B97F4A7C15L));
+        h = mix(h ^ mix(lastModified + 0x632BE59BD9B4E019L));
+        return h == EMPTY ? 1 : h;
+    }
+
+    public synchronized boolean contains(final long fingerprint) {
+        if (contains(current, fingerprint)) {
+            return true;
+        }
+        if (previous != null && contains(previous, fingerprint)) {
+            add(fingerprint);
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void add(final long fingerprint) {
+        if (fingerprint == EMPTY) {
+            throw new IllegalArgumentException("Not a fingerprint: 0");
+        }
+        if (currentSize >= capacity) {
+            previous = current;
+            current = newTable(capacity);
+            currentSize = 0;
+        }
+        if (insert(current, fingerprint)) {
+            currentSize++;
+        }
+    }
+
+    /**
+     * How many fingerprints are kept, including those in the previous table
+     * (which may also be in the current one).
+     */
+    public synchronized int size() {
+        return currentSize + (previous == null ? 0 : count(previous));
+    }
+
+    public synchronized void clear() {
+        current = newTable(capacity);
+        currentSize = 0;
+        previous = null;
+    }
+
+    /**
+     * Write all fingerprints, the current ones last, so that reading them
+     * back into a filter of the same capacity restores the current table.
+     */
+    public synchronized void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(size());
+        if (previous != null) {
+            write(previous, out);
+        }
+        write(current, out);
+    }
+
+    /**
+     * Add the fingerprints written by {@link #writeTo(DataOutput)}.
+     */
+    public synchronized void readFrom(final DataInput in) throws IOException {
+        final int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            final long fingerprint = in.readLong();
+            if (fingerprint != EMPTY) {
+                add(fingerprint);
+            }
+        }
+    }
+
+    private static long[] newTable(final int capacity) {
+        // at most half full, so that probe sequences stay short
+        return new long[Integer.highestOneBit(Math.max(capacity, 8) * 2 - 1) << 1];
+    }
+
+    private static boolean contains(final long[] table, final long fingerprint) {
+        final int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+            final long slot = table[i];
+            if (slot == fingerprint) {
+                return true;
+            }
+            if (slot == EMPTY) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean insert(final long[] table, final long fingerprint) {
+        final int mask = table.length - 1;
+        for (int i = (int) fingerprint & mask;; i = (i + 1) & mask) {
+            final long slot = table[i];
+            if (slot == fingerprint) {
+                return false;
+            }
+            if (slot == EMPTY) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+    }
+
+    private static int count(final long[] table) {
+        int count = 0;
+        for (final long slot : table) {
+            if (slot != EMPTY) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void write(final long[] table, final DataOutput out) throws IOException {
+        for (final long slot : table) {
+            if (slot != EMPTY) {
+                out.writeLong(slot);
+            }
+        }
+    }
+
+    // finalizer of MurmurHash3
+    private static long mix(final long value) {
+        long h = value;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb93fe85a6ca3L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+}
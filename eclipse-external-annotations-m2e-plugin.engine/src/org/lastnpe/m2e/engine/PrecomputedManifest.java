@@ -0,0 +1,324 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * What discovery found for each module of a reactor, computed headless (e.g.
+ * by a Maven goal on CI), so that the configurator can apply it instead of
+ * discovering it again, as long as the inputs of a module did not change.
+ *
+ * <p>
+ * Everything is recorded by Maven coordinates rather than paths, so that a
+ * manifest is valid on any machine, whatever its local repository and
+ * workspace locations: which classpath entry is the annotationpath of which,
+ * which *-eea dependency has the EEA of the JRE, and the JDT options of the
+ * maven-compiler-plugin dependencies. Each of these three comes with a hash
+ * of its inputs, see {@link #inputKey(String, Optional)}, and applies only if
+ * the configurator computes the same hash, which it does without reading
+ * the eea-for-gav marker of any JAR.
+ *
+ * <p>
+ * The file is line based UTF-8 text, with tab separated fields, starting
+ * with a line giving the format {@link #VERSION}; a manifest of another
+ * version is ignored.
+ */
+public final class PrecomputedManifest {
+
+    public static final int VERSION = 3;
+
+    private static final String HEADER = "lastnpe-eea-manifest";
+    private static final String MODULE = "module";
+    private static final String ENTRY = "entry";
+    private static final String JRE = "jre";
+    private static final String OPTIONS = "options";
+    private static final String OPTION = "option";
+    private static final String NO_MARKER = "-";
+    private static final String SHA1_SUFFIX = ".sha1";
+
+    private final Map<String, Module> modules = new TreeMap<>();
+
+    public Optional<Module> getModule(final String groupId, final String artifactId) {
+        return Optional.ofNullable(modules.get(groupId + ':' + artifactId));
+    }
+
+    /**
+     * Add a module, replacing what was recorded for it before.
+     */
+    public void putModule(final Module module) {
+        modules.put(module.key, module);
+    }
+
+    public int size() {
+        return modules.size();
+    }
+
+    /**
+     * Coordinates as recorded in the manifest: groupId:artifactId:version, and :classifier if it has one.
+     */
+    public static String coordinates(final String groupId, final String artifactId, final String version,
+            final String classifier) {
+        final String gav = groupId + ':' + artifactId + ':' + version;
+        return classifier == null || classifier.isEmpty() ? gav : gav + ':' + classifier;
+    }
+
+    /**
+     * The key of one input of a module, i.e. a classpath entry or dependency,
+     * to compute {@link #hash(List)} from: its coordinates, and what tells
+     * whether it changed in a way which is the same on every machine, without
+     * opening it, because that is what discovery would do. For a JAR, that is
+     * the SHA-1 which the local repository keeps next to it for an artifact
+     * downloaded from a remote repository, if it is not older than the JAR
+     * (so that one installed over it afterwards does not keep the checksum of
+     * the one it replaced), else its length. For a directory, it is the
+     * eea-for-gav marker file, which is read as a plain file; for an output
+     * directory such as target/classes, that of its project, as in the
+     * Eclipse workspace.
+     *
+     * @param fileOrDirectory the artifact, if known
+     */
+    public static String inputKey(final String coordinates, final Optional<File> fileOrDirectory) {
+        if (!fileOrDirectory.isPresent()) {
+            return coordinates;
+        }
+        final File file = fileOrDirectory.get();
+        if (file.isFile()) {
+            return coordinates + '|' + getChecksum(file).orElseGet(() -> String.valueOf(file.length()));
+        }
+        File directory = file;
+        if (file.toPath().endsWith(Paths.get("target", "classes"))) {
+            directory = file.getParentFile().getParentFile();
+        }
+        final Optional<byte[]> marker = EeaFiles.readFile(new File(directory, EeaFiles.EEA_FOR_GAV_FILENAME)
+                .toPath());
+        return coordinates + '|' + marker.map(PrecomputedManifest::sha256).orElse(NO_MARKER);
+    }
+
+    /**
+     * The SHA-1 of a JAR from the .sha1 file next to it, if there is one, and
+     * it is not older than the JAR.
+     */
+    private static Optional<String> getChecksum(final File file) {
+        final File checksumFile = new File(file.getPath() + SHA1_SUFFIX);
+        final long lastModified = checksumFile.lastModified();
+        if (lastModified == 0 || lastModified < file.lastModified()) {
+            return Optional.empty();
+        }
+        // the first word, as some tools append the file name
+        final String[] words = EeaFiles.readFile(checksumFile.toPath())
+                .map(content -> new String(content, StandardCharsets.US_ASCII).trim().split("\\s+", 2))
+                .orElse(new String[] { "" });
+        final String checksum = words[0].toLowerCase(Locale.ROOT);
+        if (checksum.length() != 40 || !checksum.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return Optional.empty();
+        }
+        return Optional.of("sha1:" + checksum);
+    }
+
+    /**
+     * Hex SHA-256 of the input keys of a module, in their order, which matters
+     * because the first classpath entry claiming a GAV wins.
+     */
+    public static String hash(final List<String> inputKeys) {
+        final StringBuilder all = new StringBuilder().append(VERSION);
+        for (final String inputKey : inputKeys) {
+            all.append('\n').append(inputKey);
+        }
+        return sha256(all.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Read a manifest.
+     *
+     * @return empty if the file does not exist or is of another version
+     * @throws IOException if it cannot be read, or is not a manifest
+     */
+    public static Optional<PrecomputedManifest> read(final Path file) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            final String header = reader.readLine();
+            if (header == null || !header.startsWith(HEADER + ' ')) {
+                throw new IOException("Not an EEA manifest: " + file);
+            }
+            if (!header.equals(HEADER + ' ' + VERSION)) {
+                return Optional.empty();
+            }
+            final PrecomputedManifest manifest = new PrecomputedManifest();
+            Module module = null;
+            Map<String, String> options = null;
+            String line;
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                final String[] fields = line.split("\t", -1);
+                if (fields[0].equals(MODULE) && fields.length == 5) {
+                    module = new Module(fields[1], fields[2], fields[3], fields[4]);
+                    manifest.putModule(module);
+                    options = null;
+                } else if (module == null) {
+                    throw new IOException("Bad line " + lineNumber + " of " + file + ", no module: " + line);
+                } else if (fields[0].equals(ENTRY) && fields.length == 3) {
+                    module.entryAnnotations.put(fields[1], fields[2]);
+                } else if (fields[0].equals(JRE) && fields.length == 2) {
+                    module.jreAnnotations = Optional.of(fields[1]);
+                } else if (fields[0].equals(OPTIONS) && fields.length == 1) {
+                    options = new LinkedHashMap<>();
+                    module.compilerOptions.add(options);
+                } else if (fields[0].equals(OPTION) && fields.length == 3 && options != null) {
+                    options.put(fields[1], fields[2]);
+                } else {
+                    throw new IOException("Bad line " + lineNumber + " of " + file + ": " + line);
+                }
+            }
+            return Optional.of(manifest);
+        }
+    }
+
+    /**
+     * Write the manifest, replacing the file atomically.
+     */
+    public void write(final Path file) throws IOException {
+        final Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmpFile, StandardCharsets.UTF_8)) {
+            writer.write(HEADER + ' ' + VERSION);
+            writer.newLine();
+            for (final Module module : modules.values()) {
+                writeLine(writer, MODULE, module.key, module.classpathHash, module.jreHash, module.compilerHash);
+                for (final Map.Entry<String, String> entry : module.entryAnnotations.entrySet()) {
+                    writeLine(writer, ENTRY, entry.getKey(), entry.getValue());
+                }
+                if (module.jreAnnotations.isPresent()) {
+                    writeLine(writer, JRE, module.jreAnnotations.get());
+                }
+                for (final Map<String, String> options : module.compilerOptions) {
+                    writeLine(writer, OPTIONS);
+                    for (final Map.Entry<String, String> option : new TreeMap<>(options).entrySet()) {
+                        writeLine(writer, OPTION, option.getKey(), option.getValue());
+                    }
+                }
+            }
+        }
+        Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeLine(final BufferedWriter writer, final String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].indexOf('\t') >= 0 || fields[i].indexOf('\n') >= 0 || fields[i].indexOf('\r') >= 0) {
+                throw new IllegalArgumentException("Cannot write a tab or line break to an EEA manifest: "
+                        + fields[i]);
+            }
+            if (i > 0) {
+                writer.write('\t');
+            }
+            writer.write(fields[i]);
+        }
+        writer.newLine();
+    }
+
+    private static String sha256(final byte[] bytes) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return HexFormat.of().formatHex(digest.digest(bytes));
+    }
+
+    /**
+     * What was found for one module, identified by groupId:artifactId.
+     */
+    public static final class Module {
+        private final String key;
+        private final String classpathHash;
+        private final String jreHash;
+        private final String compilerHash;
+        private final Map<String, String> entryAnnotations = new TreeMap<>();
+        private Optional<String> jreAnnotations = Optional.empty();
+        private final List<Map<String, String>> compilerOptions = new ArrayList<>();
+
+        /**
+         * @param classpathHash {@link PrecomputedManifest#hash(List)} of the classpath entries
+         * @param jreHash hash of the *-eea dependencies
+         * @param compilerHash hash of the maven-compiler-plugin dependencies
+         */
+        public Module(final String groupId, final String artifactId, final String classpathHash,
+                final String jreHash, final String compilerHash) {
+            this(groupId + ':' + artifactId, classpathHash, jreHash, compilerHash);
+        }
+
+        private Module(final String key, final String classpathHash, final String jreHash,
+                final String compilerHash) {
+            this.key = key;
+            this.classpathHash = classpathHash;
+            this.jreHash = jreHash;
+            this.compilerHash = compilerHash;
+        }
+
+        /**
+         * Record that the EEA of a classpath entry is (the path of) another one.
+         */
+        public void putEntryAnnotations(final String entryCoordinates, final String eeaCoordinates) {
+            entryAnnotations.put(entryCoordinates, eeaCoordinates);
+        }
+
+        public void setJreAnnotations(final String eeaCoordinates) {
+            jreAnnotations = Optional.of(eeaCoordinates);
+        }
+
+        public void addCompilerOptions(final Map<String, String> options) {
+            compilerOptions.add(options);
+        }
+
+        /**
+         * The coordinates of the classpath entry with the EEA of each classpath
+         * entry which has one, if the classpath still has the given hash.
+         */
+        public Optional<Map<String, String>> getEntryAnnotations(final String currentClasspathHash) {
+            return classpathHash.equals(currentClasspathHash)
+                    ? Optional.of(Collections.unmodifiableMap(entryAnnotations))
+                    : Optional.empty();
+        }
+
+        /**
+         * The coordinates of the *-eea dependency with the EEA of the JRE (empty
+         * if none has it), if the *-eea dependencies still have the given hash.
+         */
+        public Optional<Optional<String>> getJreAnnotations(final String currentJreHash) {
+            return jreHash.equals(currentJreHash) ? Optional.of(jreAnnotations) : Optional.empty();
+        }
+
+        /**
+         * The JDT options of the maven-compiler-plugin dependencies, if they still have the given hash.
+         */
+        public Optional<List<Map<String, String>>> getCompilerOptions(final String currentCompilerHash) {
+            return compilerHash.equals(currentCompilerHash)
+                    ? Optional.of(Collections.unmodifiableList(compilerOptions))
+                    : Optional.empty();
+        }
+    }
+
+}
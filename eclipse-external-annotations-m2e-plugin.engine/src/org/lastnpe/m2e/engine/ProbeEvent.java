@@ -0,0 +1,48 @@
+package org.lastnpe.m2e.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for reading a file such as the eea-for-gav marker
+ * from a JAR or directory, see {@link EeaFiles#read(java.io.File, String)}.
+ *
+ * <p>
+ * Like all JFR events, this costs next to nothing unless a recording with it
+ * enabled is running; the fields are only filled in if it will be committed.
+ */
+@Name("org.lastnpe.m2e.Probe")
+@Label("EEA Probe")
+@Category({ "lastnpe", "m2e" })
+@Description("Reading a file from a JAR or directory")
+@StackTrace(false)
+public final class ProbeEvent extends Event {
+
+    public static final String FOUND = "found";
+    public static final String MISSING = "missing";
+    public static final String ERROR = "error";
+
+    @Label("Artifact")
+    public String path;
+
+    @Label("Artifact Size")
+    @DataAmount
+    public long artifactSize;
+
+    @Label("File Name")
+    public String fileName;
+
+    @Label("Read Size")
+    @Description("Bytes read, or -1 if the file was not found")
+    @DataAmount
+    public long size = -1;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
@@ -0,0 +1,39 @@
+package org.lastnpe.m2e.engine;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event for resolving a Maven artifact, e.g. the EEA
+ * dependencies of the JRE and the compiler plugin dependencies.
+ */
+@Name("org.lastnpe.m2e.Resolve")
+@Label("EEA Maven Resolve")
+@Category({ "lastnpe", "m2e" })
+@Description("Resolving a Maven artifact")
+@StackTrace(false)
+public final class ResolveEvent extends Event {
+
+    public static final String RESOLVED = "resolved";
+    public static final String UNRESOLVED = "unresolved";
+    public static final String ERROR = "error";
+
+    @Label("Coordinates")
+    public String coordinates;
+
+    @Label("Artifact")
+    public String path;
+
+    @Label("Artifact Size")
+    @DataAmount
+    public long size = -1;
+
+    @Label("Outcome")
+    public String outcome;
+
+}
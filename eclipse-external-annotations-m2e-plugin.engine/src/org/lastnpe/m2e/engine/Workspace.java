@@ -0,0 +1,25 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.File;
+import java.util.Optional;
+
+/**
+ * Access to the workspace the configured projects are in, i.e. the Eclipse
+ * workspace, or a stand-in for running the engine in a plain JVM.
+ */
+public interface Workspace {
+
+    /**
+     * The location on disk of a classpath entry path, which may be workspace
+     * relative (e.g. /project/target/classes) or absolute.
+     */
+    Optional<File> getLocation(String path);
+
+    /**
+     * The path under which an EEA location is to be set as annotationpath:
+     * workspace relative, if it is (the output folder of) a workspace project,
+     * else the absolute location.
+     */
+    String getAnnotationPath(File location);
+
+}
@@ -0,0 +1,233 @@
+package org.lastnpe.m2e.engine;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads a single entry of a ZIP/JAR file, without building a {@link ZipFile}.
+ *
+ * <p>
+ * Asking a {@link ZipFile} whether it contains one entry costs parsing and
+ * allocating its whole central directory, plus native inflater setup, which is
+ * a lot for large JARs which in the vast majority of cases don't have the entry
+ * at all. This instead reads only the end of central directory record and the
+ * central directory itself, scans the latter by comparing raw name bytes
+ * without allocating anything per entry, and only inflates the entry if found.
+ *
+ * <p>
+ * Archives using ZIP64, spanning multiple disks, with data prepended (like
+ * self-extracting archives) or with the entry encrypted or compressed with
+ * something other than deflate are handed over to {@link ZipFile}.
+ */
+public final class ZipEntryProbe {
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+    private static final int ZIP64_EOCD_LOCATOR_SIGNATURE = 0x07064b50;
+    private static final int CEN_SIGNATURE = 0x02014b50;
+    private static final int LOC_SIGNATURE = 0x04034b50;
+    private static final int EOCD_SIZE = 22;
+    private static final int ZIP64_EOCD_LOCATOR_SIZE = 20;
+    private static final int CEN_HEADER_SIZE = 46;
+    private static final int LOC_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    /** Central directories up to this size reuse a per-thread buffer; larger ones get a temporary one. */
+    private static final int MAX_CACHED_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN));
+
+    private ZipEntryProbe() {
+    }
+
+    /**
+     * Read the content of an entry.
+     *
+     * @param zipFile a ZIP/JAR file
+     * @param entryName the name of the entry, e.g. "eea-for-gav"
+     * @return content of the entry, if any
+     * @throws IOException if the file cannot be read or is not a ZIP file
+     */
+    public static Optional<byte[]> read(final File zipFile, final String entryName) throws IOException {
+        try (FileChannel channel = FileChannel.open(zipFile.toPath(), StandardOpenOption.READ)) {
+            return read(channel, entryName.getBytes(StandardCharsets.UTF_8));
+        } catch (final UnsupportedArchiveException e) {
+            return readWithZipFile(zipFile, entryName);
+        }
+    }
+
+    private static Optional<byte[]> read(final FileChannel channel, final byte[] name)
+            throws IOException, UnsupportedArchiveException {
+        final long size = channel.size();
+        if (size < EOCD_SIZE) {
+            throw new IOException("Too small to be a ZIP file: " + size + " bytes");
+        }
+
+        // The end of central directory record is at the very end, unless followed by a comment
+        final int tailSize = (int) Math.min(size, EOCD_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = readFully(channel, size - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - EOCD_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == EOCD_SIGNATURE && i + EOCD_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailSize) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new UnsupportedArchiveException();
+        }
+        final long eocdPosition = size - tailSize + eocd;
+        if (eocd >= ZIP64_EOCD_LOCATOR_SIZE
+                && tail.getInt(eocd - ZIP64_EOCD_LOCATOR_SIZE) == ZIP64_EOCD_LOCATOR_SIGNATURE) {
+            throw new UnsupportedArchiveException();
+        }
+        final int diskNumber = tail.getShort(eocd + 4) & 0xFFFF;
+        final int cenDiskNumber = tail.getShort(eocd + 6) & 0xFFFF;
+        final int totalEntries = tail.getShort(eocd + 10) & 0xFFFF;
+        final long cenSize = tail.getInt(eocd + 12) & 0xFFFFFFFFL;
+        final long cenOffset = tail.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (diskNumber != 0 || cenDiskNumber != 0 || totalEntries == 0xFFFF || cenSize == 0xFFFFFFFFL
+                || cenOffset == 0xFFFFFFFFL || cenOffset + cenSize != eocdPosition) {
+            throw new UnsupportedArchiveException();
+        }
+
+        final ByteBuffer cen = readFully(channel, cenOffset, (int) cenSize);
+        final int cenLimit = (int) cenSize;
+        int pos = 0;
+        for (int entry = 0; entry < totalEntries; entry++) {
+            if (pos + CEN_HEADER_SIZE > cenLimit || cen.getInt(pos) != CEN_SIGNATURE) {
+                throw new UnsupportedArchiveException();
+            }
+            final int nameLength = cen.getShort(pos + 28) & 0xFFFF;
+            final int extraLength = cen.getShort(pos + 30) & 0xFFFF;
+            final int commentLength = cen.getShort(pos + 32) & 0xFFFF;
+            if (nameLength == name.length && nameEquals(cen, pos + CEN_HEADER_SIZE, name)) {
+                return readEntry(channel, cen, pos);
+            }
+            pos += CEN_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<byte[]> readEntry(final FileChannel channel, final ByteBuffer cen, final int pos)
+            throws IOException, UnsupportedArchiveException {
+        final int flags = cen.getShort(pos + 8) & 0xFFFF;
+        final int method = cen.getShort(pos + 10) & 0xFFFF;
+        final long compressedSize = cen.getInt(pos + 20) & 0xFFFFFFFFL;
+        final long uncompressedSize = cen.getInt(pos + 24) & 0xFFFFFFFFL;
+        final long localHeaderOffset = cen.getInt(pos + 42) & 0xFFFFFFFFL;
+        final boolean encrypted = (flags & 1) != 0;
+        if (encrypted || method != STORED && method != DEFLATED || compressedSize >= Integer.MAX_VALUE
+                || uncompressedSize >= Integer.MAX_VALUE || localHeaderOffset == 0xFFFFFFFFL) {
+            throw new UnsupportedArchiveException();
+        }
+
+        final ByteBuffer loc = ByteBuffer.allocate(LOC_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, localHeaderOffset, loc);
+        if (loc.getInt(0) != LOC_SIGNATURE) {
+            throw new UnsupportedArchiveException();
+        }
+        final long dataOffset = localHeaderOffset + LOC_HEADER_SIZE + (loc.getShort(26) & 0xFFFF)
+                + (loc.getShort(28) & 0xFFFF);
+        final byte[] data = new byte[(int) compressedSize];
+        readFully(channel, dataOffset, ByteBuffer.wrap(data));
+        if (method == STORED) {
+            return Optional.of(data);
+        }
+
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            final byte[] content = new byte[(int) uncompressedSize];
+            int inflated = 0;
+            while (inflated < content.length && !inflater.finished()) {
+                final int n = inflater.inflate(content, inflated, content.length - inflated);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new UnsupportedArchiveException();
+                }
+                inflated += n;
+            }
+            if (inflated != content.length) {
+                throw new UnsupportedArchiveException();
+            }
+            return Optional.of(content);
+        } catch (final DataFormatException e) {
+            throw new IOException("Corrupt deflated entry at offset " + localHeaderOffset, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static boolean nameEquals(final ByteBuffer cen, final int offset, final byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (cen.get(offset + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer readFully(final FileChannel channel, final long position, final int length)
+            throws IOException {
+        ByteBuffer buffer = BUFFER.get();
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+            if (length <= MAX_CACHED_BUFFER_SIZE) {
+                BUFFER.set(buffer);
+            }
+        }
+        buffer.clear().limit(length);
+        readFully(channel, position, buffer);
+        return buffer;
+    }
+
+    private static void readFully(final FileChannel channel, final long position, final ByteBuffer buffer)
+            throws IOException {
+        long p = position;
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, p);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of ZIP file at offset " + p);
+            }
+            p += n;
+        }
+    }
+
+    /**
+     * Signals an archive which has to be read with {@link ZipFile} instead.
+     */
+    private static final class UnsupportedArchiveException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedArchiveException() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static Optional<byte[]> readWithZipFile(final File file, final String entryName) throws IOException {
+        try (ZipFile zipFile = new ZipFile(file)) {
+            final ZipEntry entry = zipFile.getEntry(entryName);
+            if (entry == null) {
+                return Optional.empty();
+            }
+            try (InputStream is = zipFile.getInputStream(entry)) {
+                return Optional.of(is.readAllBytes());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.lastnpe.m2e.maven;
+
+import java.io.IOException;
+import java.util.Optional;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes the EEA manifest at the end of the build, if the precompute goal did
+ * not run on every module of the reactor, e.g. because some failed with
+ * --fail-at-end, or were skipped by --resume-from, so that what it recorded
+ * for the others is not lost. Only active if the plugin is declared with
+ * <code>&lt;extensions&gt;true&lt;/extensions&gt;</code>.
+ */
+@Named("eea-precompute")
+@Singleton
+public class PrecomputeLifecycleParticipant extends AbstractMavenLifecycleParticipant {
+
+    /**
+     * Key of the repository session data which tells the goal that the manifest will be written anyway.
+     */
+    static final String ACTIVE = PrecomputeLifecycleParticipant.class.getName();
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(PrecomputeLifecycleParticipant.class);
+
+    @Override
+    public void afterProjectsRead(final MavenSession session) {
+        session.getRepositorySession().getData().set(ACTIVE, Boolean.TRUE);
+    }
+
+    @Override
+    public void afterSessionEnd(final MavenSession session) throws MavenExecutionException {
+        final Optional<PrecomputeMojo.Reactor> reactor = PrecomputeMojo.Reactor.get(session);
+        if (!reactor.isPresent() || reactor.get().isWritten()) {
+            return;
+        }
+        LOGGER.warn("The precompute goal only ran on {} modules, writing the EEA manifest anyway",
+                reactor.get().getProgress());
+        try {
+            reactor.get().write(LOGGER::info);
+        } catch (final IOException e) {
+            throw new MavenExecutionException(e.getMessage(), e);
+        }
+    }
+
+}
@@ -0,0 +1,395 @@
+package org.lastnpe.m2e.maven;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.ArtifactUtils;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.lastnpe.m2e.engine.ArtifactResolver;
+import org.lastnpe.m2e.engine.ClasspathEntry;
+import org.lastnpe.m2e.engine.CompilerPreferencesCache;
+import org.lastnpe.m2e.engine.ExternalAnnotationsEngine;
+import org.lastnpe.m2e.engine.MavenGAV;
+import org.lastnpe.m2e.engine.Metrics;
+import org.lastnpe.m2e.engine.PrecomputedManifest;
+import org.lastnpe.m2e.engine.Workspace;
+
+/**
+ * Discover the External Annotations of each module of a reactor, as the
+ * configurator does on import, and record them in a
+ * {@link PrecomputedManifest}, which the configurator applies instead, for
+ * projects whose m2e.eea.manifest property points to it.
+ *
+ * <p>
+ * Modules of the reactor stand for the workspace projects they are imported
+ * as, so it has to run on the whole reactor, after compile. The manifest is
+ * written once all modules are done, or, if the plugin is declared as an
+ * extension, at the end of the build, with the modules it did run on, see
+ * {@link PrecomputeLifecycleParticipant}; modules it already has, but which
+ * are not in the reactor, are kept.
+ */
+@Mojo(name = "precompute", requiresDependencyResolution = ResolutionScope.TEST, threadSafe = true)
+public class PrecomputeMojo extends AbstractMojo {
+
+    private static final Object LOCK = new Object();
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    private MavenSession session;
+
+    /**
+     * The manifest to write, the same as the m2e.eea.manifest property of the projects.
+     */
+    @Parameter(property = "m2e.eea.manifest", defaultValue = "${session.executionRootDirectory}/eea-manifest.txt")
+    private File manifestFile;
+
+    /**
+     * How many classpath entries to probe concurrently, as for the configurator.
+     */
+    @Parameter(property = "m2e.eea.discovery.parallelism", defaultValue = "1")
+    private int parallelism;
+
+    @Component
+    private RepositorySystem repositorySystem;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        final Reactor reactor = getReactor();
+        if (!"pom".equals(project.getPackaging())) {
+            final PrecomputedManifest.Module module = precompute(reactor);
+            synchronized (LOCK) {
+                reactor.getManifest(manifestFile).putModule(module);
+            }
+        }
+        try {
+            reactor.done(getLog()::info);
+        } catch (final IOException e) {
+            throw new MojoExecutionException(e.getMessage(), e);
+        }
+    }
+
+    private PrecomputedManifest.Module precompute(final Reactor reactor) throws MojoExecutionException {
+        final ExternalAnnotationsEngine engine = new ExternalAnnotationsEngine(new FileWorkspace(),
+                (fileOrDirectory, probe) -> reactor.getMarker(fileOrDirectory, probe),
+                Optional.empty(), new CompilerPreferencesCache(), new Metrics());
+        final Map<String, String> resolvedCoordinates = new ConcurrentHashMap<>();
+        final ArtifactResolver<Dependency, MojoExecutionException> resolver = dependency -> {
+            final Optional<File> file = resolve(reactor, dependency);
+            file.ifPresent(f -> resolvedCoordinates.putIfAbsent(f.getPath(), toCoordinates(dependency)));
+            return file;
+        };
+
+        final List<Entry> classpath = getClasspath(reactor);
+        final Map<String, String> coordinatesByPath = new HashMap<>();
+        for (final Entry entry : classpath) {
+            coordinatesByPath.putIfAbsent(entry.getPath(), entry.coordinates);
+        }
+        final List<Dependency> eeaDependencies = getEeaDependencies();
+        final List<Dependency> compilerPluginDependencies = getCompilerPluginDependencies();
+        final PrecomputedManifest.Module module = new PrecomputedManifest.Module(project.getGroupId(),
+                project.getArtifactId(), engine.hashClasspath(classpath),
+                engine.hashDependencies(eeaDependencies, PrecomputeMojo::toCoordinates, resolver),
+                engine.hashDependencies(compilerPluginDependencies, PrecomputeMojo::toCoordinates, resolver));
+
+        engine.configureClasspath(classpath, parallelism);
+        for (final Entry entry : classpath) {
+            if (entry.annotationPath != null) {
+                module.putEntryAnnotations(entry.coordinates, coordinatesByPath.get(entry.annotationPath));
+            }
+        }
+        engine.findJreAnnotationPath(eeaDependencies, resolver)
+                .ifPresent(path -> module.setJreAnnotations(resolvedCoordinates.get(path)));
+        engine.getCompilerOptions(compilerPluginDependencies, resolver).forEach(module::addCompilerOptions);
+        return module;
+    }
+
+    /**
+     * The classpath entries of the Maven Dependencies container, in the same
+     * order; reactor modules as the directory of their project.
+     */
+    private List<Entry> getClasspath(final Reactor reactor) {
+        final List<Entry> classpath = new ArrayList<>();
+        for (final Artifact artifact : project.getArtifacts()) {
+            if (!artifact.getArtifactHandler().isAddedToClasspath()) {
+                continue;
+            }
+            final MavenProject module = reactor.getProject(artifact.getGroupId(), artifact.getArtifactId(),
+                    artifact.getBaseVersion());
+            final File file = module != null ? module.getBasedir() : artifact.getFile();
+            if (file != null) {
+                classpath.add(new Entry(artifact, file));
+            }
+        }
+        return classpath;
+    }
+
+    // the same dependencies as the configurator's, see ClasspathConfigurator
+
+    private List<Dependency> getEeaDependencies() {
+        return project.getDependencies().stream().filter(d -> d.getArtifactId().endsWith("-eea"))
+                .collect(Collectors.toList());
+    }
+
+    private List<Dependency> getCompilerPluginDependencies() {
+        final Plugin plugin = project.getPlugin("org.apache.maven.plugins:maven-compiler-plugin");
+        if (plugin == null) {
+            return Collections.emptyList();
+        }
+        return plugin.getDependencies().stream().filter(d -> !"tycho-compiler-jdt".equals(d.getArtifactId()))
+                .collect(Collectors.toList());
+    }
+
+    private static String toCoordinates(final Dependency dependency) {
+        return PrecomputedManifest.coordinates(dependency.getGroupId(), dependency.getArtifactId(),
+                dependency.getVersion(), dependency.getClassifier());
+    }
+
+    /**
+     * Resolve a dependency as M2E would: a module of the reactor to its
+     * output directory, anything else from the repositories.
+     */
+    private Optional<File> resolve(final Reactor reactor, final Dependency dependency)
+            throws MojoExecutionException {
+        final MavenProject module = reactor.getProject(dependency.getGroupId(), dependency.getArtifactId(),
+                dependency.getVersion());
+        if (module != null) {
+            return Optional.of(new File(module.getBuild().getOutputDirectory()));
+        }
+        final RepositorySystemSession repositorySession = session.getRepositorySession();
+        final ArtifactRequest request = new ArtifactRequest(
+                RepositoryUtils.toDependency(dependency, repositorySession.getArtifactTypeRegistry()).getArtifact(),
+                project.getRemoteProjectRepositories(), null);
+        try {
+            return Optional.ofNullable(repositorySystem.resolveArtifact(repositorySession, request).getArtifact())
+                    .map(org.eclipse.aether.artifact.Artifact::getFile);
+        } catch (final ArtifactResolutionException e) {
+            getLog().warn("Could not resolve " + toCoordinates(dependency) + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * What all executions of the goal in a build share, kept in its repository session.
+     */
+    private Reactor getReactor() {
+        synchronized (LOCK) {
+            Reactor reactor = (Reactor) session.getRepositorySession().getData().get(Reactor.class);
+            if (reactor == null) {
+                reactor = new Reactor(session.getProjects());
+                session.getRepositorySession().getData().set(Reactor.class, reactor);
+                if (session.getRepositorySession().getData().get(PrecomputeLifecycleParticipant.ACTIVE) == null) {
+                    getLog().info("The EEA manifest is only written once this goal ran on all "
+                            + session.getProjects().size() + " modules; declare the plugin with"
+                            + " <extensions>true</extensions> to have it written at the end of the build anyway");
+                }
+            }
+            return reactor;
+        }
+    }
+
+    static final class Reactor {
+        private final Map<String, MavenProject> projects = new HashMap<>();
+        private final Map<File, List<MavenGAV>> markers = new ConcurrentHashMap<>();
+        private final Map<File, PrecomputedManifest> manifests = new LinkedHashMap<>();
+        private final int modules;
+        private int done;
+        private boolean written;
+
+        Reactor(final List<MavenProject> reactorProjects) {
+            modules = reactorProjects.size();
+            for (final MavenProject reactorProject : reactorProjects) {
+                projects.put(key(reactorProject.getGroupId(), reactorProject.getArtifactId(),
+                        reactorProject.getVersion()), reactorProject);
+            }
+        }
+
+        /**
+         * The module of the reactor with the given coordinates, if any. The
+         * version may be a base version, or that of a timestamped SNAPSHOT of
+         * it, as a dependency can declare it.
+         */
+        MavenProject getProject(final String groupId, final String artifactId, final String version) {
+            return projects.get(key(groupId, artifactId, version));
+        }
+
+        private static String key(final String groupId, final String artifactId, final String version) {
+            return groupId + ':' + artifactId + ':' + ArtifactUtils.toSnapshotVersion(version);
+        }
+
+        /**
+         * The marker of a JAR or directory, probed once for all modules; outside of the map, the first one wins.
+         */
+        List<MavenGAV> getMarker(final File fileOrDirectory, final Function<File, List<MavenGAV>> probe) {
+            final List<MavenGAV> cached = markers.get(fileOrDirectory);
+            if (cached != null) {
+                return cached;
+            }
+            final List<MavenGAV> probed = probe.apply(fileOrDirectory);
+            final List<MavenGAV> raced = markers.putIfAbsent(fileOrDirectory, probed);
+            return raced != null ? raced : probed;
+        }
+
+        /**
+         * The manifest to add modules to, starting with what the file has, if it exists.
+         */
+        PrecomputedManifest getManifest(final File file) throws MojoExecutionException {
+            PrecomputedManifest manifest = manifests.get(file);
+            if (manifest == null) {
+                try {
+                    manifest = PrecomputedManifest.read(file.toPath()).orElseGet(PrecomputedManifest::new);
+                } catch (final IOException e) {
+                    throw new MojoExecutionException("Could not read EEA manifest " + file, e);
+                }
+                manifests.put(file, manifest);
+            }
+            return manifest;
+        }
+
+        /**
+         * The reactor of a build, if the goal ran in it.
+         */
+        static Optional<Reactor> get(final MavenSession session) {
+            synchronized (LOCK) {
+                return Optional.ofNullable((Reactor) session.getRepositorySession().getData().get(Reactor.class));
+            }
+        }
+
+        /**
+         * Count a module as done, and write the manifests once all are.
+         */
+        void done(final Consumer<String> log) throws IOException {
+            synchronized (LOCK) {
+                if (++done == modules) {
+                    write(log);
+                }
+            }
+        }
+
+        /**
+         * Write the manifests, unless they already were.
+         */
+        void write(final Consumer<String> log) throws IOException {
+            synchronized (LOCK) {
+                if (written) {
+                    return;
+                }
+                written = true;
+                for (final Map.Entry<File, PrecomputedManifest> manifest : manifests.entrySet()) {
+                    try {
+                        manifest.getValue().write(manifest.getKey().toPath());
+                    } catch (final IOException e) {
+                        throw new IOException("Could not write EEA manifest " + manifest.getKey(), e);
+                    }
+                    log.accept("Wrote External Annotations of " + manifest.getValue().size() + " modules to "
+                            + manifest.getKey());
+                }
+            }
+        }
+
+        boolean isWritten() {
+            synchronized (LOCK) {
+                return written;
+            }
+        }
+
+        /**
+         * How many modules the goal ran on, of how many.
+         */
+        String getProgress() {
+            synchronized (LOCK) {
+                return done + " of " + modules;
+            }
+        }
+    }
+
+    /**
+     * A classpath entry, by the absolute path of its JAR or project directory.
+     */
+    private static final class Entry implements ClasspathEntry {
+        final Artifact artifact;
+        final File file;
+        final String coordinates;
+        String annotationPath;
+
+        Entry(final Artifact artifact, final File file) {
+            this.artifact = artifact;
+            this.file = file;
+            this.coordinates = PrecomputedManifest.coordinates(artifact.getGroupId(), artifact.getArtifactId(),
+                    artifact.getBaseVersion(), artifact.getClassifier());
+        }
+
+        @Override
+        public String getPath() {
+            return file.getAbsolutePath();
+        }
+
+        @Override
+        public String getGroupId() {
+            return artifact.getGroupId();
+        }
+
+        @Override
+        public String getArtifactId() {
+            return artifact.getArtifactId();
+        }
+
+        @Override
+        public String getVersion() {
+            return artifact.getBaseVersion();
+        }
+
+        @Override
+        public String getClassifier() {
+            return artifact.getClassifier();
+        }
+
+        @Override
+        public void setAnnotationPath(final String annotationPath) {
+            this.annotationPath = annotationPath;
+        }
+    }
+
+    /**
+     * No workspace: paths are absolute.
+     */
+    private static final class FileWorkspace implements Workspace {
+        @Override
+        public Optional<File> getLocation(final String path) {
+            return Optional.of(new File(path));
+        }
+
+        @Override
+        public String getAnnotationPath(final File location) {
+            return location.getPath();
+        }
+    }
+
+}
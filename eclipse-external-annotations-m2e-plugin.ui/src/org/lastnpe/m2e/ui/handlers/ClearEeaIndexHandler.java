@@ -0,0 +1,25 @@
+package org.lastnpe.m2e.ui.handlers;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.lastnpe.m2e.core.Activator;
+
+/**
+ * Clears the persistent eea-for-gav index, so that every classpath entry is
+ * probed again on the next Maven project update, and forgets the artifacts
+ * resolved so far, which are then resolved again too.
+ */
+public class ClearEeaIndexHandler extends AbstractHandler {
+
+    @Override
+    public Object execute(final ExecutionEvent event) throws ExecutionException {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getMarkerIndex().clear();
+            activator.getResolutionCache().clear();
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,28 @@
+package org.lastnpe.m2e.ui.handlers;
+
+import org.eclipse.core.commands.AbstractHandler;
+import org.eclipse.core.commands.ExecutionEvent;
+import org.eclipse.core.commands.ExecutionException;
+import org.lastnpe.m2e.core.Activator;
+
+/**
+ * Clears the persistent eea-for-gav index and rebuilds it in the background
+ * from the dependencies of all Maven projects of the workspace. Also forgets
+ * the artifacts resolved so far, in case the local repository changed behind
+ * the back of m2e.
+ */
+public class RebuildEeaIndexHandler extends AbstractHandler {
+
+    @Override
+    public Object execute(final ExecutionEvent event) throws ExecutionException {
+        final Activator activator = Activator.getDefault();
+        if (activator != null) {
+            activator.getIndexingJob().cancel();
+            activator.getMarkerIndex().clear();
+            activator.getResolutionCache().clear();
+            activator.getIndexingJob().scheduleFull();
+        }
+        return null;
+    }
+
+}